@@ -2,11 +2,17 @@ package year2019;
 
 import aoc.IAocTask;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static year2019.utils.Aoc2019Utils.*;
 
 public class Day02 implements IAocTask {
+    private static final long EXPECTED_OUTPUT = 19690720;
+    private static final int MAX_INPUT = 99;
+
     @Override
     public String getFileName() {
         return "aoc2019/input_02.txt";
@@ -24,8 +30,8 @@ public class Day02 implements IAocTask {
     @Override
     public void solvePartTwo(List<String> lines) {
         long[] parsedCode = loadProgram(lines);
-        long[] copied = runProgramV2(parsedCode);
-        System.out.format("%d", 100 * copied[1] + copied[2]);
+        long nounAndVerb = runProgramV2(parsedCode);
+        System.out.format("%d", nounAndVerb);
     }
 
     private void runProgram(long[] parsedCode) {
@@ -35,22 +41,45 @@ public class Day02 implements IAocTask {
         }
     }
 
-    private long[] runProgramV2(long[] parsedCode) {
-
-        for (int i = 0; i < 100; i++) {
-            for (int j = 0; j < 100; j++) {
-                long[] copied = new long[parsedCode.length];
-                System.arraycopy(parsedCode, 0, copied, 0, parsedCode.length);
-                copied[1] = i;
-                copied[2] = j;
-                runProgram(copied);
-                if (copied[0] == 19690720) {
+    /**
+     * Solves the output polynomial of the noun and verb if the program can be evaluated symbolically and the polynomial
+     * does not overflow, runs the brute force batch otherwise
+     *
+     * @return 100 * noun + verb giving the expected output or -1
+     */
+    long runProgramV2(long[] parsedCode) {
+        Optional<Polynomial> output = Polynomial.evaluateSymbolically(parsedCode);
+        if (output.isPresent()) {
+            try {
+                long nounAndVerb = output.get().solve(EXPECTED_OUTPUT);
+                if (nounAndVerb != -1) {
                     System.out.println("yes");
-                    return copied;
                 }
+                return nounAndVerb;
+            } catch (ArithmeticException e) {
+                // the polynomial overflows for some inputs, the program itself has to be run
+            }
+        }
+        return runBatch(parsedCode);
+    }
+
+    /**
+     * Runs all 100x100 (noun, verb) pairs as a batch over one shared program image
+     */
+    private long runBatch(long[] parsedCode) {
+        IntCodeBatch.Result result = new IntCodeBatch(parsedCode).run((MAX_INPUT + 1) * (MAX_INPUT + 1), (instance, computer) -> {
+            computer.write(1, instance / 100);
+            computer.write(2, instance % 100);
+            return null;
+        });
+
+        for (int instance = 0; instance < result.getInstancesCount(); instance++) {
+            if (result.read(instance, 0) == EXPECTED_OUTPUT) {
+                System.out.println("yes");
+                return 100 * result.read(instance, 1) + result.read(instance, 2);
             }
         }
-        return parsedCode;
+        return -1;
     }
 
     public static int runBasicInstructions(long[] parsedCode, int i) {
@@ -73,4 +102,189 @@ public class Day02 implements IAocTask {
     public static void multiplyNumbers(int i, long[] parsedCode) {
         parsedCode[(int) parsedCode[i + 3]] = parsedCode[(int) parsedCode[i + 1]] * parsedCode[(int) parsedCode[i + 2]];
     }
+
+    /**
+     * Polynomial of the noun (position 1) and verb (position 2) with the long coefficients,
+     * the monomial key packs the noun exponent in the high and the verb exponent in the low 32 bits
+     */
+    static class Polynomial {
+        private static final int MAX_STEPS = 1_000_000;
+
+        private final Map<Long, Long> coefficients = new HashMap<>();
+
+        private static Polynomial constant(long value) {
+            Polynomial polynomial = new Polynomial();
+            polynomial.addTerm(0, value);
+            return polynomial;
+        }
+
+        private static Polynomial variable(int nounExponent, int verbExponent) {
+            Polynomial polynomial = new Polynomial();
+            polynomial.addTerm((long) nounExponent << Integer.SIZE | verbExponent, 1);
+            return polynomial;
+        }
+
+        /**
+         * Runs the add / mul program with the symbolic noun and verb. Reading from an address depending on them gives
+         * an unknown value (null), which is fine as long as the value is overwritten before it is used.
+         *
+         * @return the polynomial left at the position 0 or empty if the program writes to a symbolic address, executes
+         * or dereferences a symbolic or unknown value, uses other instructions, reaches out of the memory, leaves
+         * an unknown output or a coefficient overflows
+         */
+        static Optional<Polynomial> evaluateSymbolically(long[] program) {
+            Polynomial[] memory = new Polynomial[program.length];
+            for (int i = 0; i < program.length; i++) {
+                memory[i] = constant(program[i]);
+            }
+            memory[1] = variable(1, 0);
+            memory[2] = variable(0, 1);
+
+            try {
+                int ip = 0;
+                for (int step = 0; step < MAX_STEPS && ip < memory.length; step++) {
+                    long opcode = getConstant(memory, ip);
+                    if (opcode == INSTR_STOP) {
+                        return Optional.ofNullable(memory[0]);
+                    }
+                    if ((opcode != INSTR_ADD && opcode != INSTR_MUL) || ip + 3 >= memory.length) {
+                        return Optional.empty();
+                    }
+                    Polynomial x = read(memory, ip + 1);
+                    Polynomial y = read(memory, ip + 2);
+                    Polynomial result = x == null || y == null ? null : opcode == INSTR_ADD ? x.add(y) : x.multiply(y);
+                    memory[getAddress(memory, ip + 3)] = result;
+                    ip += 4;
+                }
+            } catch (ArithmeticException | IndexOutOfBoundsException e) {
+                return Optional.empty();
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * @return value at the address kept at the pointer, null if the address is not a constant
+         */
+        private static Polynomial read(Polynomial[] memory, int pointer) {
+            if (memory[pointer] == null || !memory[pointer].isConstant()) {
+                return null;
+            }
+            return memory[getAddress(memory, pointer)];
+        }
+
+        private static int getAddress(Polynomial[] memory, int pointer) {
+            long address = getConstant(memory, pointer);
+            if (address < 0 || address >= memory.length) {
+                throw new IndexOutOfBoundsException(String.format("Address %d out of the memory", address));
+            }
+            return (int) address;
+        }
+
+        private static long getConstant(Polynomial[] memory, int address) {
+            if (memory[address] == null) {
+                throw new ArithmeticException(String.format("Unknown value at %d", address));
+            }
+            return memory[address].getConstant();
+        }
+
+        private boolean isConstant() {
+            return coefficients.keySet().stream().allMatch(monomial -> monomial == 0);
+        }
+
+        /**
+         * @throws ArithmeticException if the polynomial depends on the noun or verb
+         */
+        private long getConstant() {
+            if (!isConstant()) {
+                throw new ArithmeticException("Not a constant: " + this);
+            }
+            return coefficients.getOrDefault(0L, 0L);
+        }
+
+        private void addTerm(long monomial, long coefficient) {
+            long sum = Math.addExact(coefficients.getOrDefault(monomial, 0L), coefficient);
+            if (sum == 0) {
+                coefficients.remove(monomial);
+            } else {
+                coefficients.put(monomial, sum);
+            }
+        }
+
+        private Polynomial add(Polynomial other) {
+            Polynomial sum = new Polynomial();
+            coefficients.forEach(sum::addTerm);
+            other.coefficients.forEach(sum::addTerm);
+            return sum;
+        }
+
+        private Polynomial multiply(Polynomial other) {
+            Polynomial product = new Polynomial();
+            coefficients.forEach((monomial, coefficient) -> other.coefficients.forEach((otherMonomial, otherCoefficient) ->
+                    product.addTerm(monomial + otherMonomial, Math.multiplyExact(coefficient, otherCoefficient))));
+            return product;
+        }
+
+        /**
+         * The verb is solved directly when the polynomial is linear in it, otherwise every verb is evaluated
+         *
+         * @return 100 * noun + verb of the first (noun, verb) pair giving the value or -1
+         * @throws ArithmeticException if the polynomial overflows a long for some noun and verb
+         */
+        long solve(long value) {
+            boolean isLinearInVerb = coefficients.keySet().stream().allMatch(monomial -> (int) (long) monomial <= 1);
+            for (long noun = 0; noun <= MAX_INPUT; noun++) {
+                if (isLinearInVerb) {
+                    long constantTerm = evaluate(noun, 0);
+                    long verbCoefficient = Math.subtractExact(evaluate(noun, 1), constantTerm);
+                    if (verbCoefficient == 0) {
+                        if (constantTerm == value) {
+                            return 100 * noun;
+                        }
+                    } else if (Math.subtractExact(value, constantTerm) % verbCoefficient == 0) {
+                        long verb = Math.subtractExact(value, constantTerm) / verbCoefficient;
+                        if (verb >= 0 && verb <= MAX_INPUT) {
+                            return 100 * noun + verb;
+                        }
+                    }
+                    continue;
+                }
+                for (long verb = 0; verb <= MAX_INPUT; verb++) {
+                    if (evaluate(noun, verb) == value) {
+                        return 100 * noun + verb;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @throws ArithmeticException if the value or any of its terms overflows a long
+         */
+        long evaluate(long noun, long verb) {
+            long value = 0;
+            for (Map.Entry<Long, Long> term : coefficients.entrySet()) {
+                long monomial = term.getKey();
+                long nounPower = power(noun, (int) (monomial >>> Integer.SIZE));
+                long verbPower = power(verb, (int) monomial);
+                value = Math.addExact(value, Math.multiplyExact(Math.multiplyExact(term.getValue(), nounPower), verbPower));
+            }
+            return value;
+        }
+
+        private static long power(long base, int exponent) {
+            long result = 1;
+            for (int i = 0; i < exponent; i++) {
+                result = Math.multiplyExact(result, base);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder polynomial = new StringBuilder();
+            coefficients.forEach((monomial, coefficient) -> polynomial.append(String.format("%s%d*n^%d*v^%d",
+                    polynomial.length() == 0 ? "" : " + ", coefficient, monomial >>> Integer.SIZE, (int) (long) monomial)));
+            return polynomial.length() == 0 ? "0" : polynomial.toString();
+        }
+    }
 }
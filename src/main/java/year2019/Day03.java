@@ -3,9 +3,18 @@ package year2019;
 import aoc.IAocTask;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Wires are kept as the horizontal and vertical segments with the steps the wire took before entering them.
+ * Perpendicular crossings are found by the sweep line going along x: the horizontal segments are active between their
+ * ends (kept in a tree by y), every vertical segment queries the active ones of the other wire in its y range.
+ * Overlapping collinear segments are checked separately, the candidates are the ends of the overlap and the axis
+ * (the points next to the origin when the overlap goes through it).
+ */
 public class Day03 implements IAocTask {
+    private static final int INSERT = 0;
+    private static final int QUERY = 1;
+    private static final int REMOVE = 2;
 
     @Override
     public String getFileName() {
@@ -14,91 +23,210 @@ public class Day03 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        String[] wireA = lines.get(0).split(",");
-        String[] wireB = lines.get(1).split(",");
-        List<Point> pathA = generatePath(wireA);
-        List<Point> pathB = generatePath(wireB);
+        int closest = findCrossings(lines).stream()
+                .mapToInt(Crossing::getDistance)
+                .min()
+                .orElseThrow(() -> new RuntimeException("The wires do not cross"));
+        System.out.println(closest);
+    }
 
-        Point closest = pathA.stream().filter(p -> p.x != 0 || p.y != 0)
-                .filter(p -> pathB.stream().anyMatch(q -> q.compareTo(p) == 0))
-                .min((a, b) -> Integer.compare(Math.abs(a.x) + Math.abs(a.y), Math.abs(b.x) + Math.abs(b.y)))
-                .orElse(null);
+    @Override
+    public void solvePartTwo(List<String> lines) {
+        long fewestSteps = findCrossings(lines).stream()
+                .mapToLong(crossing -> crossing.steps)
+                .min()
+                .orElseThrow(() -> new RuntimeException("The wires do not cross"));
+        System.out.println(fewestSteps);
+    }
 
-        System.out.println(Math.abs(closest.x) + Math.abs(closest.y));
+    List<Crossing> findCrossings(List<String> lines) {
+        List<Segment> segments = new ArrayList<>(toSegments(lines.get(0), 0));
+        segments.addAll(toSegments(lines.get(1), 1));
+        List<Crossing> crossings = new ArrayList<>();
+        findPerpendicularCrossings(segments, crossings);
+        findCollinearCrossings(segments, crossings);
+        return crossings;
     }
 
-    private List<Point> generatePath(String[] wire) {
-        List<Point> path = new ArrayList<>();
-        path.add(new Point(0, 0, 0));
-
-        int totalSteps = 0;
-        for (int i = 0; i < wire.length; i++) {
-            String direction = wire[i].substring(0, 1);
-            Integer steps = Integer.valueOf(wire[i].substring(1));
-
-            int x = 0, y = 0;
-            if (direction.equals("D")) {
-                x = 0;
-                y = -1;
-            } else if (direction.equals("U")) {
-                x = 0;
-                y = 1;
-            } else if (direction.equals("L")) {
-                x = -1;
-                y = 0;
-            } else if (direction.equals("R")) {
-                x = 1;
-                y = 0;
+    static List<Segment> toSegments(String wire, int wireId) {
+        List<Segment> segments = new ArrayList<>();
+        int x = 0;
+        int y = 0;
+        long totalSteps = 0;
+        for (String move : wire.trim().split(",")) {
+            char direction = move.charAt(0);
+            int steps = Integer.parseInt(move.substring(1));
+            switch (direction) {
+                case 'U':
+                    segments.add(new Segment(segments.size(), wireId, false, x, y, y + steps, totalSteps));
+                    y += steps;
+                    break;
+                case 'D':
+                    segments.add(new Segment(segments.size(), wireId, false, x, y, y - steps, totalSteps));
+                    y -= steps;
+                    break;
+                case 'R':
+                    segments.add(new Segment(segments.size(), wireId, true, y, x, x + steps, totalSteps));
+                    x += steps;
+                    break;
+                case 'L':
+                    segments.add(new Segment(segments.size(), wireId, true, y, x, x - steps, totalSteps));
+                    x -= steps;
+                    break;
+                default:
+                    throw new RuntimeException(String.format("Unknown direction %c", direction));
             }
+            totalSteps += steps;
+        }
+        return segments;
+    }
 
-            for (int j = 0; j < steps; j++) {
-                totalSteps++;
-                Point a = path.get(path.size() - 1);
-                path.add(new Point(a.x + x, a.y + y, totalSteps));
+    private void findPerpendicularCrossings(List<Segment> segments, List<Crossing> crossings) {
+        List<int[]> events = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.isHorizontal) {
+                events.add(new int[]{segment.from, INSERT, i});
+                events.add(new int[]{segment.to, REMOVE, i});
+            } else {
+                events.add(new int[]{segment.fixed, QUERY, i});
+            }
+        }
+        events.sort(Comparator.<int[]>comparingInt(event -> event[0]).thenComparingInt(event -> event[1]));
+
+        // active horizontal segments of each wire by their (y, id) packed into a long
+        List<TreeMap<Long, Segment>> activeHorizontals = Arrays.asList(new TreeMap<>(), new TreeMap<>());
+        for (int[] event : events) {
+            Segment segment = segments.get(event[2]);
+            if (event[1] == INSERT) {
+                activeHorizontals.get(segment.wire).put(segment.getKey(), segment);
+            } else if (event[1] == REMOVE) {
+                activeHorizontals.get(segment.wire).remove(segment.getKey());
+            } else {
+                long lowest = (long) segment.from << Integer.SIZE;
+                long highest = (long) segment.to << Integer.SIZE | Integer.MAX_VALUE;
+                for (Segment horizontal : activeHorizontals.get(1 - segment.wire).subMap(lowest, true, highest, true).values()) {
+                    addCrossing(crossings, segment.fixed, horizontal.fixed,
+                            horizontal.getStepsAt(segment.fixed) + segment.getStepsAt(horizontal.fixed));
+                }
             }
         }
-        return path;
     }
 
-    @Override
-    public void solvePartTwo(List<String> lines) {
-        String[] wireA = lines.get(0).split(",");
-        String[] wireB = lines.get(1).split(",");
-        List<Point> pathA = generatePath(wireA);
-        List<Point> pathB = generatePath(wireB);
+    /**
+     * Segments on the same line sorted by their beginnings, every segment is compared only with the ones starting
+     * before it ends
+     */
+    private void findCollinearCrossings(List<Segment> segments, List<Crossing> crossings) {
+        List<Segment> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.<Segment, Boolean>comparing(segment -> segment.isHorizontal)
+                .thenComparingInt(segment -> segment.fixed)
+                .thenComparingInt(segment -> segment.from));
+        for (int i = 0; i < sorted.size(); i++) {
+            Segment segment = sorted.get(i);
+            for (int j = i + 1; j < sorted.size(); j++) {
+                Segment other = sorted.get(j);
+                if (other.isHorizontal != segment.isHorizontal || other.fixed != segment.fixed || other.from > segment.to) {
+                    break;
+                }
+                if (other.wire == segment.wire) {
+                    continue;
+                }
+                int from = other.from;
+                int to = Math.min(segment.to, other.to);
+                addCollinearCrossing(crossings, segment, other, from);
+                addCollinearCrossing(crossings, segment, other, to);
+                if (from <= 0 && 0 <= to) {
+                    if (segment.fixed != 0) {
+                        addCollinearCrossing(crossings, segment, other, 0);
+                    } else {
+                        // the origin does not count, the closest crossings are next to it
+                        if (from < 0) {
+                            addCollinearCrossing(crossings, segment, other, -1);
+                        }
+                        if (to > 0) {
+                            addCollinearCrossing(crossings, segment, other, 1);
+                        }
+                    }
+                }
+            }
+        }
+    }
 
-        List<Point> intersections = pathA.stream().filter(p -> p.x != 0 || p.y != 0)
-                .filter(p -> pathB.stream().anyMatch(q -> q.compareTo(p) == 0))
-                .collect(Collectors.toList());
+    private void addCollinearCrossing(List<Crossing> crossings, Segment segment, Segment other, int coordinate) {
+        long steps = segment.getStepsAt(coordinate) + other.getStepsAt(coordinate);
+        if (segment.isHorizontal) {
+            addCrossing(crossings, coordinate, segment.fixed, steps);
+        } else {
+            addCrossing(crossings, segment.fixed, coordinate, steps);
+        }
+    }
 
-        List<Point> intersectionsB = pathB.stream().filter(p -> intersections.stream().anyMatch(q -> q.compareTo(p) == 0)).collect(Collectors.toList());
+    private void addCrossing(List<Crossing> crossings, int x, int y, long steps) {
+        if (x != 0 || y != 0) {
+            crossings.add(new Crossing(x, y, steps));
+        }
+    }
 
-        HashMap<Point, Point> combinedIntersections = new HashMap<>();
-        intersections.forEach(point -> {
-            combinedIntersections.put(point, intersectionsB.stream().filter(p -> p.compareTo(point) == 0).min(Comparator.comparingInt(p -> p.step)).orElse(null));
-        });
+    static class Segment {
+        /**
+         * index of the segment on its wire
+         */
+        private final int id;
+        final int wire;
+        final boolean isHorizontal;
+        /**
+         * y of the horizontal segment, x of the vertical one
+         */
+        final int fixed;
+        /**
+         * the range along the segment, from <= to
+         */
+        final int from, to;
+        /**
+         * coordinate along the segment where the wire enters it
+         */
+        private final int start;
+        /**
+         * steps of the wire before entering the segment
+         */
+        private final long steps;
+
+        Segment(int id, int wire, boolean isHorizontal, int fixed, int start, int end, long steps) {
+            this.id = id;
+            this.wire = wire;
+            this.isHorizontal = isHorizontal;
+            this.fixed = fixed;
+            this.start = start;
+            this.from = Math.min(start, end);
+            this.to = Math.max(start, end);
+            this.steps = steps;
+        }
 
-        Integer pathLength = intersections.stream()
-                .map(p -> p.step + combinedIntersections.get(p).step)
-                .min(Integer::compareTo)
-                .orElse(null);
+        private long getKey() {
+            return (long) fixed << Integer.SIZE | id;
+        }
 
-        System.out.println(pathLength);
+        long getStepsAt(int coordinate) {
+            return steps + Math.abs(coordinate - start);
+        }
     }
 
-    class Point implements Comparable<Point> {
-        private final int step;
-        Integer x, y;
-
-        public Point(int i, int i1, int step) {
-            x = i;
-            y = i1;
-            this.step = step;
+    static class Crossing {
+        final int x, y;
+        /**
+         * combined steps of both wires
+         */
+        final long steps;
+
+        Crossing(int x, int y, long steps) {
+            this.x = x;
+            this.y = y;
+            this.steps = steps;
         }
 
-        @Override
-        public int compareTo(Point point) {
-            return Math.abs(x.compareTo(point.x)) + Math.abs(y.compareTo(point.y));
+        int getDistance() {
+            return Math.abs(x) + Math.abs(y);
         }
     }
 }
@@ -2,16 +2,10 @@ package year2019;
 
 import aoc.IAocTask;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.math.BigInteger;
 import java.util.List;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class Day04 implements IAocTask {
-    private int lower;
-    private int upper;
-    private Function<int[], Boolean> repeatCondition;
 
     @Override
     public String getFileName() {
@@ -20,91 +14,107 @@ public class Day04 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        this.repeatCondition = this::hasDouble;
-        int count = getNumbersCount(lines);
-        System.out.println(count);
+        System.out.println(getNumbersCount(lines, RepeatRule.ANY_DOUBLE));
     }
 
     @Override
     public void solvePartTwo(List<String> lines) {
-        this.repeatCondition = this::hasExactDouble;
-        int count = getNumbersCount(lines);
-        System.out.println(count);
+        System.out.println(getNumbersCount(lines, RepeatRule.EXACT_DOUBLE));
     }
 
-    private int getNumbersCount(List<String> lines) {
-        List<Integer> range = Arrays.stream(lines.get(0).split("-"))
-                .map(Integer::valueOf)
-                .collect(Collectors.toCollection(ArrayList::new));
-        Integer lower = range.get(0);
-        Integer upper = range.get(1);
-
-        return countNumbersMeetingCriteria(lower, upper);
+    private BigInteger getNumbersCount(List<String> lines, RepeatRule rule) {
+        String[] range = lines.get(0).trim().split("-");
+        BigInteger lower = new BigInteger(range[0].trim());
+        BigInteger upper = new BigInteger(range[1].trim());
+        return countNumbersMeetingCriteria(lower, upper, rule);
     }
 
-    private int countNumbersMeetingCriteria(int lower, int upper) {
-        int digitsCount = 6;
-        int currentDigitIdx = 0;
-        int count = 0;
-        int[] number = new int[digitsCount];
-        this.lower = lower;
-        this.upper = upper;
-
-        for (int i = 1; i <= 9; i++) {
-            count += countNumbers(currentDigitIdx, i, digitsCount, number);
+    /**
+     * @return count of the numbers in [lower, upper] with the non-decreasing digits and a repeat meeting the rule
+     */
+    static BigInteger countNumbersMeetingCriteria(BigInteger lower, BigInteger upper, RepeatRule rule) {
+        if (lower.compareTo(upper) > 0) {
+            return BigInteger.ZERO;
         }
-        return count;
+        BigInteger countToLower = lower.signum() > 0
+                ? new PasswordCounter(lower.subtract(BigInteger.ONE), rule).count()
+                : BigInteger.ZERO;
+        return new PasswordCounter(upper.max(BigInteger.ZERO), rule).count().subtract(countToLower);
     }
 
-    private int countNumbers(int currentDigitIdx, int digit, int digitsCount, int[] number) {
-        number[currentDigitIdx] = digit;
-        if (currentDigitIdx == digitsCount - 1) {
-            boolean meetsCriteria = isInRange(number) && this.repeatCondition.apply(number);
-//            if (meetsCriteria) {
-//                print(number);
-//            }
-            return meetsCriteria ? 1 : 0;
-        }
-        int sum = 0;
-        for (int i = digit; i <= 9; i++) {
-            sum += countNumbers(currentDigitIdx + 1, i, digitsCount, number);
+    enum RepeatRule {
+        /**
+         * two adjacent digits are the same
+         */
+        ANY_DOUBLE,
+        /**
+         * two adjacent digits are the same and not a part of a larger group
+         */
+        EXACT_DOUBLE;
+
+        boolean isMetBy(int runLength) {
+            return this == ANY_DOUBLE ? runLength >= 2 : runLength == 2;
         }
-        return sum;
     }
 
-//    private void print(int[] number) {
-//        for (int value : number) {
-//            System.out.format("%d", value);
-//        }
-//        System.out.println();
-//    }
-
-    private boolean isInRange(int[] numberArr) {
-        int number = 0;
-        for (int value : numberArr) {
-            number *= 10;
-            number += value;
+    /**
+     * Digit DP counting the matching numbers in [1, limit]. The state is (position, previous digit, length of the
+     * current run of the same digits, rule met so far, tight bound), the run length is capped at 3 as no rule
+     * distinguishes the longer runs. Counts of the states below the bound are memoized. The counts are BigIntegers,
+     * for the limits of about 530 digits they no longer fit in a long.
+     */
+    static class PasswordCounter {
+        private static final int MAX_RUN_LENGTH = 3;
+
+        private final int[] limitDigits;
+        private final RepeatRule rule;
+        /**
+         * null for the states not counted yet
+         */
+        private final BigInteger[][][][] memo;
+
+        PasswordCounter(BigInteger limit, RepeatRule rule) {
+            this.limitDigits = limit.toString().chars().map(digit -> digit - '0').toArray();
+            this.rule = rule;
+            memo = new BigInteger[limitDigits.length + 1][10][MAX_RUN_LENGTH + 1][2];
         }
 
-        return this.lower <= number && this.upper >= number;
-    }
+        BigInteger count() {
+            return countFrom(0, 0, 0, false, true);
+        }
 
-    private boolean hasDouble(int[] number) {
-        for (int i = 1; i < number.length; i++) {
-            if (number[i - 1] == number[i]) {
-                return true;
+        /**
+         * @param runLength 0 while only the leading zeros were placed
+         */
+        private BigInteger countFrom(int position, int previousDigit, int runLength, boolean isRuleMet, boolean isTight) {
+            if (position == limitDigits.length) {
+                return runLength > 0 && (isRuleMet || rule.isMetBy(runLength)) ? BigInteger.ONE : BigInteger.ZERO;
+            }
+            boolean isMemoized = runLength > 0 && !isTight;
+            int ruleMetIdx = isRuleMet ? 1 : 0;
+            if (isMemoized && memo[position][previousDigit][runLength][ruleMetIdx] != null) {
+                return memo[position][previousDigit][runLength][ruleMetIdx];
             }
-        }
 
-        return false;
-    }
+            int maxDigit = isTight ? limitDigits[position] : 9;
+            BigInteger count = BigInteger.ZERO;
+            if (runLength == 0) {
+                count = count.add(countFrom(position + 1, 0, 0, false, isTight && maxDigit == 0));
+            }
+            for (int digit = Math.max(previousDigit, 1); digit <= maxDigit; digit++) {
+                boolean isNextTight = isTight && digit == maxDigit;
+                if (runLength > 0 && digit == previousDigit) {
+                    count = count.add(countFrom(position + 1, digit, Math.min(runLength + 1, MAX_RUN_LENGTH), isRuleMet, isNextTight));
+                } else {
+                    boolean isNextRuleMet = isRuleMet || (runLength > 0 && rule.isMetBy(runLength));
+                    count = count.add(countFrom(position + 1, digit, 1, isNextRuleMet, isNextTight));
+                }
+            }
 
-    private boolean hasExactDouble(int[] number) {
-        int[] digitsCounter = new int[10];
-        for (int value : number) {
-            digitsCounter[value - 1]++;
+            if (isMemoized) {
+                memo[position][previousDigit][runLength][ruleMetIdx] = count;
+            }
+            return count;
         }
-
-        return Arrays.stream(digitsCounter).anyMatch(counter -> counter == 2);
     }
 }
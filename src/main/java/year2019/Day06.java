@@ -5,10 +5,8 @@ import aoc.IAocTask;
 import java.util.*;
 
 public class Day06 implements IAocTask {
-    //
-    HashMap<String, String> childToParent = new HashMap<>();
-    HashMap<String, HashSet<String>> parentToChildren = new HashMap<>();
-    HashMap<String, Integer> nodeDistanceToRoot = new HashMap<>();
+    private static final String SANTA = "SAN";
+    private static final String YOU = "YOU";
 
     @Override
     public String getFileName() {
@@ -18,82 +16,176 @@ public class Day06 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        for (String line : lines) {
-            String[] parentChild = line.split("\\)");
-            String parent = parentChild[0];
-            String child = parentChild[1];
-            childToParent.put(child, parent);
-            if (!parentToChildren.containsKey(parent)) {
-                parentToChildren.put(parent, new HashSet<>());
-            }
-            parentToChildren.get(parent).add(child);
-
-            nodeDistanceToRoot.put(parent, 0);
-            nodeDistanceToRoot.put(child, 0);
-        }
-
-        String root = findRoot(nodeDistanceToRoot.keySet().iterator().next());
-        System.out.printf("Root: %s\n", root);
-        updateDistances(root, 0);
+        OrbitMap orbits = new OrbitMap(lines);
+        orbits.getRoots().forEach(root -> System.out.printf("Root: %s\n", root));
+        System.out.println(orbits.getOrbitsCount());
+    }
 
-        System.out.println(nodeDistanceToRoot.values().stream().reduce(Integer::sum).orElse(0));
+    @Override
+    public void solvePartTwo(List<String> lines) {
+        OrbitMap orbits = new OrbitMap(lines);
+        System.out.println(orbits.getClosestCommonOrbit(YOU, SANTA));
+        System.out.println(orbits.getOrbitalTransfers(YOU, SANTA));
     }
 
-    private void updateDistances(String root, int distance) {
-        nodeDistanceToRoot.put(root, distance);
-        distance++;
-        if (!parentToChildren.containsKey(root)) {
-            return;
+    /**
+     * Objects interned into the int ids with the parent and depth arrays. The binary lifting table
+     * (ancestors[k][id] is the 2^k-th ancestor) answers the lowest common ancestor queries in O(log n).
+     */
+    static class OrbitMap {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final int[] parents;
+        private final int[] depths;
+        private final int[][] ancestors;
+
+        OrbitMap(List<String> lines) {
+            List<int[]> orbits = new ArrayList<>();
+            for (String line : lines) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] parentChild = line.trim().split("\\)");
+                orbits.add(new int[]{getId(parentChild[0]), getId(parentChild[1])});
+            }
+
+            int objectsCount = names.size();
+            parents = new int[objectsCount];
+            Arrays.fill(parents, -1);
+            int[] childrenCounts = new int[objectsCount + 1];
+            for (int[] orbit : orbits) {
+                if (parents[orbit[1]] != -1) {
+                    throw new RuntimeException(String.format("%s orbits more than a single object", names.get(orbit[1])));
+                }
+                parents[orbit[1]] = orbit[0];
+                childrenCounts[orbit[0] + 1]++;
+            }
+
+            // children lists packed into a single array, children of i are at [childrenStarts[i], childrenStarts[i + 1])
+            int[] childrenStarts = childrenCounts;
+            for (int i = 0; i < objectsCount; i++) {
+                childrenStarts[i + 1] += childrenStarts[i];
+            }
+            int[] children = new int[orbits.size()];
+            int[] filled = Arrays.copyOf(childrenStarts, objectsCount);
+            for (int[] orbit : orbits) {
+                children[filled[orbit[0]]++] = orbit[1];
+            }
+
+            depths = new int[objectsCount];
+            int[] queue = new int[objectsCount];
+            int head = 0;
+            int tail = 0;
+            for (int id = 0; id < objectsCount; id++) {
+                if (parents[id] == -1) {
+                    queue[tail++] = id;
+                }
+            }
+            while (head < tail) {
+                int id = queue[head++];
+                for (int i = childrenStarts[id]; i < childrenStarts[id + 1]; i++) {
+                    depths[children[i]] = depths[id] + 1;
+                    queue[tail++] = children[i];
+                }
+            }
+            if (tail != objectsCount) {
+                throw new RuntimeException("The orbits contain a cycle");
+            }
+
+            int levels = 1;
+            while ((1 << levels) < objectsCount) {
+                levels++;
+            }
+            ancestors = new int[levels][];
+            ancestors[0] = parents;
+            for (int k = 1; k < levels; k++) {
+                int[] previous = ancestors[k - 1];
+                ancestors[k] = new int[objectsCount];
+                for (int id = 0; id < objectsCount; id++) {
+                    ancestors[k][id] = previous[id] == -1 ? -1 : previous[previous[id]];
+                }
+            }
         }
-        HashSet<String> children = parentToChildren.get(root);
-        for (String child: children) {
-            nodeDistanceToRoot.put(child, distance);
-            updateDistances(child, distance);
+
+        private int getId(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            return id;
         }
-    }
 
-    private String findRoot(String node) {
-        if (!childToParent.containsKey(node)) {
-            return node;
+        List<String> getRoots() {
+            List<String> roots = new ArrayList<>();
+            for (int id = 0; id < parents.length; id++) {
+                if (parents[id] == -1) {
+                    roots.add(names.get(id));
+                }
+            }
+            return roots;
         }
-        return findRoot(childToParent.get(node));
-    }
 
-    @Override
-    public void solvePartTwo(List<String> lines) {
-        String santa = "SAN";
-        String you = "YOU";
-        List<String> santaRouteToRoot = new ArrayList<>();
-        List<String> myRouteToRoot = new ArrayList<>();
-        getRouteToRoot(santa, santaRouteToRoot);
-        getRouteToRoot(you, myRouteToRoot);
-        findClosestCommonSubOrbit(santaRouteToRoot, myRouteToRoot);
-    }
+        /**
+         * @return number of the direct and indirect orbits
+         */
+        long getOrbitsCount() {
+            long orbitsCount = 0;
+            for (int depth : depths) {
+                orbitsCount += depth;
+            }
+            return orbitsCount;
+        }
 
-    private void findClosestCommonSubOrbit(List<String> santaRouteToRoot, List<String> myRouteToRoot) {
-        String closestCommonNode = "???";
-        String foundNode;
-        Collections.reverse(santaRouteToRoot);
-        Collections.reverse(myRouteToRoot);
+        String getClosestCommonOrbit(String one, String another) {
+            return names.get(getLowestCommonAncestor(getParent(one), getParent(another)));
+        }
 
-        for (String node: santaRouteToRoot) {
-            foundNode = myRouteToRoot.stream().filter(node::equals).findFirst().orElse(null);
-            if (foundNode != null) {
-                closestCommonNode = foundNode;
-            }
+        /**
+         * @return transfers needed to move from the object the first one orbits to the object the other one orbits
+         */
+        int getOrbitalTransfers(String one, String another) {
+            return getDistance(getParent(one), getParent(another));
         }
-        int santaDistToClosest = santaRouteToRoot.size() - santaRouteToRoot.lastIndexOf(closestCommonNode);
-        int myDistToClosest = myRouteToRoot.size() - myRouteToRoot.lastIndexOf(closestCommonNode);
 
-        System.out.println(closestCommonNode);
-        System.out.println(santaDistToClosest + myDistToClosest - 2);
-    }
+        int getDistance(int one, int another) {
+            return depths[one] + depths[another] - 2 * depths[getLowestCommonAncestor(one, another)];
+        }
+
+        int getLowestCommonAncestor(int one, int another) {
+            if (depths[one] < depths[another]) {
+                int swapped = one;
+                one = another;
+                another = swapped;
+            }
+            int depthDifference = depths[one] - depths[another];
+            for (int k = 0; depthDifference != 0; k++, depthDifference >>= 1) {
+                if ((depthDifference & 1) == 1) {
+                    one = ancestors[k][one];
+                }
+            }
+            if (one == another) {
+                return one;
+            }
+            for (int k = ancestors.length - 1; k >= 0; k--) {
+                if (ancestors[k][one] != ancestors[k][another]) {
+                    one = ancestors[k][one];
+                    another = ancestors[k][another];
+                }
+            }
+            if (parents[one] == -1) {
+                throw new RuntimeException(String.format("%s and %s have no common orbit", names.get(one), names.get(another)));
+            }
+            return parents[one];
+        }
 
-    private void getRouteToRoot(String node, List<String> path) {
-        if (!childToParent.containsKey(node)) {
-            return;
+        private int getParent(String name) {
+            Integer id = ids.get(name);
+            if (id == null || parents[id] == -1) {
+                throw new RuntimeException(String.format("%s does not orbit anything", name));
+            }
+            return parents[id];
         }
-        path.add(childToParent.get(node));
-        getRouteToRoot(childToParent.get(node), path);
     }
 }
@@ -2,12 +2,14 @@ package year2019;
 
 import aoc.IAocTask;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Day08 implements IAocTask {
+    private static final int BLACK = 0;
+    private static final int WHITE = 1;
+    private static final int TRANSPARENT = 2;
+
     private int imageWidth = 25;
     private int imageHeight = 6;
 //    private int imageWidth = 3;
@@ -21,106 +23,108 @@ public class Day08 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        List<int[][]> layers = loadImage(lines.get(0));
-
-//        printLayers(layers);
+        SpaceImageDecoder decoder = new SpaceImageDecoder(imageWidth, imageHeight);
+        decoder.decode(lines.get(0));
 
-        int layerIdx = getLayerWithFewestZeros(layers);
-        System.out.printf("layer: %d%n", layerIdx);
-
-        int onesCount = getCountOfDigitOnLayer(layers, layerIdx, 1);
-        int twosCount = getCountOfDigitOnLayer(layers, layerIdx, 2);
-        System.out.println(onesCount * twosCount);
+        System.out.printf("layer: %d%n", decoder.getLayerWithFewestZeros());
+        System.out.println(decoder.getOnesTimesTwosOnLayerWithFewestZeros());
     }
 
-    @SuppressWarnings("unused")
-    private void printLayers(List<int[][]> layers) {
-        for (int[][] layer : layers) {
-            printLayer(layer);
-            System.out.println();
-        }
+    @Override
+    public void solvePartTwo(List<String> lines) {
+        SpaceImageDecoder decoder = new SpaceImageDecoder(imageWidth, imageHeight);
+        decoder.decode(lines.get(0));
+        printLayer(decoder.getVisiblePixels());
     }
 
-    private void printLayer(int[][] layer) {
-        for (int[] row : layer) {
-            String line = Arrays.stream(row)
-                    .mapToObj(val -> val == 0 ? "▮" : val == 1 ? "▯" : "T")
-                    .reduce((val1, val2) -> String.format("%s%s", val1, val2))
-                    .orElse("");
-            System.out.println(line);
+    private void printLayer(int[] pixels) {
+        StringBuilder image = new StringBuilder();
+        for (int i = 0; i < pixels.length; i++) {
+            image.append(pixels[i] == BLACK ? "▮" : pixels[i] == WHITE ? "▯" : "T");
+            if ((i + 1) % imageWidth == 0) {
+                image.append('\n');
+            }
         }
+        System.out.print(image);
     }
 
-    private int getCountOfDigitOnLayer(List<int[][]> layers, int layerIdx, int digit) {
-        int[][] layer = layers.get(layerIdx);
-        int sum = 0;
-        for (int[] row : layer) {
-            sum += Arrays.stream(row).filter(pixelValue -> pixelValue == digit)
-                    .map(pixelValue -> 1)
-                    .sum();
+    /**
+     * Single pass over the encoded digits. Only the digits histogram of the current layer and the visible pixels
+     * (the first non-transparent one wins) are kept, so the memory does not depend on the layers count and a large
+     * image can be fed pixel by pixel.
+     */
+    static class SpaceImageDecoder {
+        private final int layerSize;
+        private final int[] visiblePixels;
+        private final int[] digitsCounts = new int[10];
+        private int pixelIdx = 0;
+        private int layerIdx = 0;
+        private int fewestZerosLayer = -1;
+        private int fewestZeros = Integer.MAX_VALUE;
+        private int onesTimesTwos = 0;
+
+        SpaceImageDecoder(int width, int height) {
+            layerSize = width * height;
+            visiblePixels = new int[layerSize];
+            Arrays.fill(visiblePixels, TRANSPARENT);
         }
-        return sum;
-    }
-
-    private List<int[][]> loadImage(String encodedImage) {
-        List<Integer> oneRowImage = Arrays.stream(encodedImage.split(""))
-                .map(Integer::valueOf)
-                .collect(Collectors.toCollection(ArrayList::new));
 
-        int layersCount = oneRowImage.size() / (imageHeight * imageWidth);
-        List<int[][]> layers = new ArrayList<>();
-
-        for (int layerIdx = 0; layerIdx < layersCount; layerIdx++) {
-            int[][] image = new int[imageHeight][imageWidth];
-            for (int j = 0; j < imageHeight; j++) {
-                for (int k = 0; k < imageWidth; k++) {
-                    image[j][k] = oneRowImage.get(layerIdx * (imageHeight * imageWidth) + j * imageWidth + k);
-                }
+        void decode(CharSequence encodedImage) {
+            for (int i = 0; i < encodedImage.length(); i++) {
+                accept(encodedImage.charAt(i));
             }
-            layers.add(image);
         }
 
-        return layers;
-    }
-
-    private int getLayerWithFewestZeros(List<int[][]> layers) {
-        int minZerosCount = imageWidth;
-
-        int[] zerosPerLayerCounter = new int[layers.size()];
+        /**
+         * @param symbol digit of the next pixel, the whitespace is skipped
+         */
+        void accept(char symbol) {
+            if (Character.isWhitespace(symbol)) {
+                return;
+            }
+            int digit = symbol - '0';
+            if (digit < 0 || digit > 9) {
+                throw new RuntimeException(String.format("Invalid pixel '%c' on layer %d", symbol, layerIdx));
+            }
+            digitsCounts[digit]++;
+            if (visiblePixels[pixelIdx] == TRANSPARENT) {
+                visiblePixels[pixelIdx] = digit;
+            }
+            if (++pixelIdx == layerSize) {
+                finishLayer();
+            }
+        }
 
-        int layerIdx = 0;
-        for (int[][] layer : layers) {
-            for (int i = 0; i < imageHeight; i++) {
-                int zerosCount = Arrays.stream(layer[i]).filter(val -> val == 0)
-                        .map(val -> 1)
-                        .sum();
-                zerosPerLayerCounter[layerIdx] += zerosCount;
+        private void finishLayer() {
+            if (digitsCounts[0] < fewestZeros) {
+                fewestZeros = digitsCounts[0];
+                fewestZerosLayer = layerIdx;
+                onesTimesTwos = digitsCounts[1] * digitsCounts[2];
             }
+            Arrays.fill(digitsCounts, 0);
+            pixelIdx = 0;
             layerIdx++;
         }
-        for (int i = 0; i < layers.size(); i++) {
-            if (zerosPerLayerCounter[i] < minZerosCount) {
-                layerIdx = i;
-                minZerosCount = zerosPerLayerCounter[i];
-            }
+
+        int getLayerWithFewestZeros() {
+            checkComplete();
+            return fewestZerosLayer;
         }
 
-        return layerIdx;
-    }
+        int getOnesTimesTwosOnLayerWithFewestZeros() {
+            checkComplete();
+            return onesTimesTwos;
+        }
 
-    @Override
-    public void solvePartTwo(List<String> lines) {
-        List<int[][]> layers = loadImage(lines.get(0));
-        int[][] merged = new int[imageHeight][imageWidth];
-        for (int i = layers.size() - 1; i >= 0; i--) {
-            int[][] layer = layers.get(i);
-            for (int j = 0; j < imageHeight; j++) {
-                for (int k = 0; k < imageWidth; k++) {
-                    merged[j][k] = layer[j][k] != 2 ? layer[j][k] : merged[j][k];
-                }
-            }
+        int[] getVisiblePixels() {
+            checkComplete();
+            return visiblePixels.clone();
         }
 
-        printLayer(merged);
+        private void checkComplete() {
+            if (pixelIdx != 0 || layerIdx == 0) {
+                throw new RuntimeException(String.format("Incomplete image: %d full layers and %d pixels more", layerIdx, pixelIdx));
+            }
+        }
     }
 }
@@ -3,8 +3,10 @@ package year2019;
 import aoc.IAocTask;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class Day10 implements IAocTask {
+    private static final int VAPORIZED_TARGET = 200;
 
     Point station = null;
 
@@ -16,24 +18,17 @@ public class Day10 implements IAocTask {
     @Override
     public void solvePartOne(List<String> lines) {
         List<Point> asteroids = loadAsteroidPositions(lines);
-        Map<Point, Set<Point>> asteroidToBaseJump = new TreeMap<>();
-        int maxDetected = 0;
-        for (Point asteroid : asteroids) {
-            HashSet<Point> baseJumps = new HashSet<>();
-            asteroidToBaseJump.put(asteroid, baseJumps);
+        AsteroidField field = new AsteroidField(asteroids);
+        int[] detected = IntStream.range(0, asteroids.size())
+                .parallel()
+                .map(i -> field.countVisibleFrom(asteroids.get(i)))
+                .toArray();
 
-            for (Point otherAsteroid : asteroids) {
-                if (otherAsteroid.equals(asteroid)) {
-//                    System.out.printf("%s equals %s%n", asteroid, otherAsteroid);
-                    continue;
-                }
-                Point jump = getBaseJumpBetween(asteroid, otherAsteroid);
-                baseJumps.add(jump);
-            }
-//            System.out.println(baseJumps.toString());
-            if (maxDetected < baseJumps.size()) {
-                maxDetected = baseJumps.size();
-                station = asteroid;
+        int maxDetected = 0;
+        for (int i = 0; i < detected.length; i++) {
+            if (maxDetected < detected[i]) {
+                maxDetected = detected[i];
+                station = asteroids.get(i);
             }
         }
         System.out.println(station);
@@ -43,74 +38,59 @@ public class Day10 implements IAocTask {
     @Override
     public void solvePartTwo(List<String> lines) {
         List<Point> asteroids = loadAsteroidPositions(lines);
+        if (station == null) {
+            solvePartOne(lines);
+        }
+        asteroids.remove(station);
 
-        DistanceComparator comparator = new DistanceComparator(station);
-        List<Point> sortedAsteroids = getPointsSortedByVaporizationOrder(asteroids, comparator);
-
-        final int[] counter = {1};
-        sortedAsteroids.forEach(asteroid -> System.out.printf("%d: %s (%.3f) (%.3f) %n",
-                counter[0]++, asteroid, comparator.getStationClockwiseAngle(asteroid),
-                Point.distanceBetween(asteroid, station)));
-
-        Point twoHundredth = asteroids.get(199);
+        Iterator<Point> vaporizationOrder = new AsteroidField(asteroids).getVaporizationOrder(station);
+        Point twoHundredth = null;
+        for (int i = 0; i < VAPORIZED_TARGET && vaporizationOrder.hasNext(); i++) {
+            twoHundredth = vaporizationOrder.next();
+        }
+        if (twoHundredth == null) {
+            throw new RuntimeException("No asteroid to vaporize");
+        }
+        System.out.printf("%d: %s%n", VAPORIZED_TARGET, twoHundredth);
         System.out.println(twoHundredth.x * 100 + twoHundredth.y);
     }
 
-    List<Point> getPointsSortedByVaporizationOrder(List<Point> asteroids, DistanceComparator comparator) {
+    List<Point> getPointsSortedByVaporizationOrder(List<Point> asteroids) {
         asteroids.remove(station);
-        Map<Double, List<Point>> angleToPoint = new TreeMap<>();
-        asteroids.forEach(asteroid -> {
-            Double angle = comparator.getStationClockwiseAngle(asteroid);
-            if (!angleToPoint.containsKey(angle)) {
-                angleToPoint.put(angle, new ArrayList<>());
-            }
-            angleToPoint.get(angle).add(asteroid);
-        });
-        angleToPoint.keySet().forEach(key -> angleToPoint.get(key).sort(comparator));
-
         List<Point> sortedAsteroids = new ArrayList<>();
-        boolean isEmpty = false;
-        while (!isEmpty) {
-            isEmpty = true;
-            for (Double angle : angleToPoint.keySet()) {
-                if (angleToPoint.get(angle).size() > 0) {
-                    isEmpty = false;
-                    Point vaporized = angleToPoint.get(angle).remove(0);
-                    sortedAsteroids.add(vaporized);
-                }
-            }
-        }
+        new AsteroidField(asteroids).getVaporizationOrder(station).forEachRemaining(sortedAsteroids::add);
         return sortedAsteroids;
     }
 
-    private Point getBaseJumpBetween(Point asteroid, Point otherAsteroid) {
-        int x1 = asteroid.x;
-        int y1 = asteroid.y;
-        int x2 = otherAsteroid.x;
-        int y2 = otherAsteroid.y;
-        int x = x2 - x1;
-        int y = y2 - y1;
-
-        int gcd = getGcd(x, y);
-        x /= gcd;
-        y /= gcd;
-        return new Point(x, y);
+    /**
+     * Orders the directions (screen coordinates, y grows downwards) clockwise, starting from the one pointing up.
+     * Exact - compares the half-planes and then the sign of the cross product.
+     */
+    static int compareClockwise(int x1, int y1, int x2, int y2) {
+        int half1 = getHalfPlane(x1, y1);
+        int half2 = getHalfPlane(x2, y2);
+        if (half1 != half2) {
+            return Integer.compare(half1, half2);
+        }
+        long cross = (long) x1 * y2 - (long) y1 * x2;
+        return -Long.signum(cross);
     }
 
-    private int getGcd(int x, int y) { // modulo
-//        int backX = x;
-//        int backY = y;
-        x = x < 0 ? -x : x;
-        y = y < 0 ? -y : y;
-
-        if (x == 0 || y == 0) return Math.max(x, y);
+    /**
+     * @return 0 for the directions from up (inclusive) to down (exclusive) through right, 1 for the others
+     */
+    private static int getHalfPlane(int x, int y) {
+        return x > 0 || (x == 0 && y < 0) ? 0 : 1;
+    }
 
-        while (x != y) {
-            //System.out.format("%d %d%n", x, y);
-            if (x < y) y = y - x;
-            else x = x - y;
+    private static int getGcd(int x, int y) {
+        x = Math.abs(x);
+        y = Math.abs(y);
+        while (y != 0) {
+            int remainder = x % y;
+            x = y;
+            y = remainder;
         }
-//        System.out.printf("GCD %d %d = %d%n", backX, backY, x);
         return x;
     }
 
@@ -134,8 +114,6 @@ public class Day10 implements IAocTask {
 
     static class Point implements Comparable<Point> {
         int x, y;
-        int color;
-        static boolean showColor = false;
 
         public Point(int x, int y) {
             this.x = x;
@@ -170,9 +148,7 @@ public class Day10 implements IAocTask {
 
         @Override
         public String toString() {
-            return !showColor
-                    ? String.format("{%3d, %3d}", x, y)
-                    : String.format("{%3d, %3d} (%s)", x, y, color == 0 ? "B" : "W");
+            return String.format("{%3d, %3d}", x, y);
         }
 
         static double distanceBetween(Point one, Point another) {
@@ -191,17 +167,166 @@ public class Day10 implements IAocTask {
 
         @Override
         public int compare(Point o1, Point o2) {
-            double distance1 = Point.distanceBetween(station, o1);
-            double distance2 = Point.distanceBetween(station, o2);
-            return Double.compare(distance1, distance2);
+            return Long.compare(getSquaredDistance(o1), getSquaredDistance(o2));
         }
 
-        double getStationClockwiseAngle(Point o1) {
-            double angle = Math.atan2(station.y - o1.y, station.x - o1.x) * 180.0 / Math.PI;
-            angle -= 90;
-            angle = angle < 0 ? angle + 360 : angle;
-            return angle;
+        private long getSquaredDistance(Point point) {
+            long x = point.x - station.x;
+            long y = point.y - station.y;
+            return x * x + y * y;
         }
+    }
 
+    /**
+     * Asteroids on a grid. The lines of sight are the gcd-reduced direction vectors, so no floating point angles
+     * are involved.
+     */
+    static class AsteroidField {
+        private final List<Point> asteroids;
+        private final int minX, minY, width, height;
+        private final boolean[] occupied;
+
+        AsteroidField(List<Point> asteroids) {
+            this.asteroids = asteroids;
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (Point asteroid : asteroids) {
+                minX = Math.min(minX, asteroid.x);
+                minY = Math.min(minY, asteroid.y);
+                maxX = Math.max(maxX, asteroid.x);
+                maxY = Math.max(maxY, asteroid.y);
+            }
+            if (asteroids.isEmpty()) {
+                minX = minY = maxX = maxY = 0;
+            }
+            this.minX = minX;
+            this.minY = minY;
+            width = maxX - minX + 1;
+            height = maxY - minY + 1;
+            occupied = new boolean[width * height];
+            for (Point asteroid : asteroids) {
+                occupied[(asteroid.y - minY) * width + asteroid.x - minX] = true;
+            }
+        }
+
+        int countVisibleFrom(Point station) {
+            int spanX = 2 * width + 1;
+            boolean[] seenDirections = new boolean[spanX * (2 * height + 1)];
+            int visible = 0;
+            for (Point asteroid : asteroids) {
+                int x = asteroid.x - station.x;
+                int y = asteroid.y - station.y;
+                if (x == 0 && y == 0) {
+                    continue;
+                }
+                int gcd = getGcd(x, y);
+                int direction = (y / gcd + height) * spanX + x / gcd + width;
+                if (!seenDirections[direction]) {
+                    seenDirections[direction] = true;
+                    visible++;
+                }
+            }
+            return visible;
+        }
+
+        /**
+         * @return asteroids in the order the laser vaporizes them, computed lazily
+         */
+        Iterator<Point> getVaporizationOrder(Point station) {
+            return new VaporizationIterator(station);
+        }
+
+        private boolean isAsteroid(int x, int y) {
+            int column = x - minX;
+            int row = y - minY;
+            return column >= 0 && column < width && row >= 0 && row < height && occupied[row * width + column];
+        }
+
+        /**
+         * Round-robin over the clockwise sorted directions, every direction keeps the step along its line of sight
+         * where the next search starts. Directions with no asteroids left drop out of the next rotations.
+         */
+        private class VaporizationIterator implements Iterator<Point> {
+            private final Point station;
+            private final int[] directionsX;
+            private final int[] directionsY;
+            private final int[] nextSteps;
+            private final int maxSteps;
+            private int[] rotation;
+            private int[] nextRotation;
+            private int rotationSize;
+            private int nextRotationSize = 0;
+            private int rotationIdx = 0;
+            private int remaining;
+
+            private VaporizationIterator(Point station) {
+                this.station = station;
+                List<Point> directions = new ArrayList<>();
+                int spanX = 2 * width + 1;
+                boolean[] seenDirections = new boolean[spanX * (2 * height + 1)];
+                for (Point asteroid : asteroids) {
+                    int x = asteroid.x - station.x;
+                    int y = asteroid.y - station.y;
+                    if (x == 0 && y == 0) {
+                        continue;
+                    }
+                    remaining++;
+                    int gcd = getGcd(x, y);
+                    int direction = (y / gcd + height) * spanX + x / gcd + width;
+                    if (!seenDirections[direction]) {
+                        seenDirections[direction] = true;
+                        directions.add(new Point(x / gcd, y / gcd));
+                    }
+                }
+                directions.sort((one, another) -> compareClockwise(one.x, one.y, another.x, another.y));
+
+                rotationSize = directions.size();
+                directionsX = new int[rotationSize];
+                directionsY = new int[rotationSize];
+                nextSteps = new int[rotationSize];
+                rotation = new int[rotationSize];
+                nextRotation = new int[rotationSize];
+                for (int i = 0; i < rotationSize; i++) {
+                    directionsX[i] = directions.get(i).x;
+                    directionsY[i] = directions.get(i).y;
+                    nextSteps[i] = 1;
+                    rotation[i] = i;
+                }
+                maxSteps = Math.abs(station.x - minX) + Math.abs(station.y - minY) + width + height;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Point next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                while (true) {
+                    if (rotationIdx == rotationSize) {
+                        int[] swapped = rotation;
+                        rotation = nextRotation;
+                        nextRotation = swapped;
+                        rotationSize = nextRotationSize;
+                        nextRotationSize = 0;
+                        rotationIdx = 0;
+                    }
+                    int direction = rotation[rotationIdx++];
+                    for (int step = nextSteps[direction]; step <= maxSteps; step++) {
+                        int x = station.x + step * directionsX[direction];
+                        int y = station.y + step * directionsY[direction];
+                        if (isAsteroid(x, y)) {
+                            nextSteps[direction] = step + 1;
+                            nextRotation[nextRotationSize++] = direction;
+                            remaining--;
+                            return new Point(x, y);
+                        }
+                    }
+                }
+            }
+        }
     }
 }
@@ -2,24 +2,25 @@ package year2019;
 
 import aoc.IAocTask;
 import year2019.utils.Aoc2019Utils;
+import year2019.utils.LongIntHashMap;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 
 public class Day11 implements IAocTask {
-    private int operationsCount = 0;
-    HashSet<Day10.Point> paintedPanels = new HashSet<>();
+    private static final int PAINTED_FLAG = 2;
+    private static final int COLOR_MASK = 1;
+
+    /**
+     * panel (x, y packed into a long) to its color, the PAINTED_FLAG bit is set once the robot painted the panel
+     */
+    LongIntHashMap panels = new LongIntHashMap();
+    int paintedPanelsCount;
     DirNode currentDirection;
 
-    int instructionPointer = 0;
-    Day10.Point currentPosition;
-    boolean finish;
-
-    int squareSize = 200;
-    int[][] visited;
-    int middleIdx = squareSize / 2;
+    int currentX;
+    int currentY;
+    int minX, maxX, minY, maxY;
+    private int operationsCount = 0;
 
     int LEFT = 0;
     int RIGHT = 1;
@@ -33,132 +34,81 @@ public class Day11 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        currentPosition = new Day10.Point(0, 0);
-        currentPosition.color = 0;
-        visited = new int[squareSize][squareSize];
-        solve(lines);
+        solve(lines, BLACK);
 //        printColors();
     }
 
     @Override
     public void solvePartTwo(List<String> lines) {
-        currentPosition = new Day10.Point(0, 0);
-        currentPosition.color = 1;
-        solve(lines);
+        solve(lines, WHITE);
         printColors();
     }
 
-    private void solve(List<String> lines) {
-        finish = false;
+    private void solve(List<String> lines, int startPanelColor) {
         currentDirection = createDirectionNodes();
-        visited = new int[squareSize][squareSize];
-        paintedPanels.clear();
-        instructionPointer = 0;
+        panels.clear();
+        paintedPanelsCount = 0;
         operationsCount = 0;
+        currentX = currentY = 0;
+        minX = maxX = minY = maxY = 0;
+        panels.put(LongIntHashMap.pack(0, 0), startPanelColor);
 
-        Day10.Point.showColor = true;
         long[] parsedCode = Aoc2019Utils.loadProgram(lines);
-        long[] largerMemory = new long[6000];
-        System.arraycopy(parsedCode, 0, largerMemory, 0, parsedCode.length);
-        parsedCode = largerMemory;
-
-        Day05 intComp = new Day05();
-        intComp.setIoListeners(this::inputCurrentPanelColor, (value, ip) -> {
-            instructionPointer = ip;
-            if (operationsCount % 2 == 0) {
-                paintPanel(value);
+        IntCodeComputer robot = new IntCodeComputer(parsedCode);
+
+        IntCodeComputer.Status status;
+        while ((status = robot.run()) != IntCodeComputer.Status.HALTED) {
+            if (status == IntCodeComputer.Status.AWAITING_INPUT) {
+                robot.addInput(getCurrentPanelColor());
+            } else if (operationsCount++ % 2 == 0) {
+                paintPanel(robot.getOutput());
             } else {
-                turnAndMoveForward(value);
+                turnAndMoveForward(robot.getOutput());
             }
-            operationsCount++;
-            return true;
-        }, () -> finish = true);
-
-        while (!finish) {
-            intComp.runProgram(parsedCode, new long[2], instructionPointer);
         }
-        List<Day10.Point> panels = new ArrayList<>(paintedPanels);
-        panels.sort(Day10.Point::compareTo);
-        System.out.println(panels);
         System.out.println(operationsCount / 2);
-        System.out.println(paintedPanels.size());
-        //printPanels();
+        System.out.println(paintedPanelsCount);
     }
 
-    @SuppressWarnings("unused")
+    /**
+     * prints the bounding box of the painted panels
+     */
     private void printColors() {
-        for (int i = -squareSize / 2; i < squareSize / 2; i++) {
-            for (int j = -squareSize; j < squareSize / 2; j++) {
-                Day10.Point point = new Day10.Point(j, -i);
-                if (paintedPanels.contains(point)) {
-                    Day10.Point painted = paintedPanels.stream().filter(point::equals).findFirst().orElse(null);
-                    assert painted != null;
-                    System.out.printf("%s", painted.color == WHITE ? "▮" : "▯");
-                }
-                else {
-                    System.out.print("▯");
-                }
+        StringBuilder hull = new StringBuilder();
+        for (int y = maxY; y >= minY; y--) {
+            for (int x = minX; x <= maxX; x++) {
+                int color = panels.get(LongIntHashMap.pack(x, y), BLACK) & COLOR_MASK;
+                hull.append(color == WHITE ? "▮" : "▯");
             }
-            System.out.println();
+            hull.append('\n');
         }
+        System.out.print(hull);
     }
 
     private void turnAndMoveForward(long value) {
-        Day10.Point prevPosition = new Day10.Point(currentPosition.x, currentPosition.y);
-        prevPosition.color = currentPosition.color;
-
         currentDirection = value == LEFT
                 ? currentDirection.left : value == RIGHT
                 ? currentDirection.right : null;
         assert currentDirection != null;
 
-        System.out.print(prevPosition);
-        System.out.printf(" turning %s: %s ", value == LEFT ? "L" : "R", currentDirection);
-        currentPosition = new Day10.Point(currentPosition.x + currentDirection.dirX, currentPosition.y + currentDirection.dirY);
-        if (paintedPanels.contains(currentPosition)) {
-//            System.out.printf("contains: %s (%s)%n", currentPosition, paintedPanels.stream().filter(p -> p.equals(currentPosition)).findFirst().orElse(null));
-            currentPosition.color = Objects
-                    .requireNonNull(paintedPanels.stream()
-                            .filter(point -> currentPosition.equals(point))
-                            .findFirst()
-                            .orElse(null)).color;
-        }
-        System.out.println(currentPosition);
+        currentX += currentDirection.dirX;
+        currentY += currentDirection.dirY;
     }
 
     private void paintPanel(long value) {
-        System.out.printf(", painting: %s ", getColorName((int) value));
-        Day10.Point point = new Day10.Point(currentPosition.x, currentPosition.y);
-        point.color = (int) value;
-        currentPosition.color = (int) value;
-        if (paintedPanels.contains(point)) {
-            Day10.Point toPaint = paintedPanels.stream().filter(p -> p.equals(point)).findFirst().orElse(null);
-            assert toPaint != null;
-            toPaint.color = point.color;
-        } else {
-            paintedPanels.add(point);
+        long panel = LongIntHashMap.pack(currentX, currentY);
+        int previous = panels.put(panel, (int) value | PAINTED_FLAG, BLACK);
+        if ((previous & PAINTED_FLAG) == 0) {
+            paintedPanelsCount++;
+            minX = Math.min(minX, currentX);
+            maxX = Math.max(maxX, currentX);
+            minY = Math.min(minY, currentY);
+            maxY = Math.max(maxY, currentY);
         }
-        visited[middleIdx - point.y][middleIdx + point.x]++;
-//        printPanels();
-    }
-
-    @SuppressWarnings("unused")
-    private void printPanels() {
-        for (int i = 0; i < squareSize; i++) {
-            for (int j = 0; j < squareSize; j++) {
-                System.out.printf("%s", visited[i][j] > 0 ? "▮" : "▯");
-            }
-            System.out.println();
-        }
-    }
-
-    private long inputCurrentPanelColor() {
-        System.out.printf("detected color: %s ", getColorName(currentPosition.color));
-        return currentPosition.color;
     }
 
-    private String getColorName(int color) {
-        return color == WHITE ? "white" : color == BLACK ? "black" : "--- UNKNOWN";
+    private long getCurrentPanelColor() {
+        return panels.get(LongIntHashMap.pack(currentX, currentY), BLACK) & COLOR_MASK;
     }
 
     static class DirNode {
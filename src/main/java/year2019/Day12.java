@@ -1,12 +1,20 @@
 package year2019;
 
 import aoc.IAocTask;
-import year2019.utils.Aoc2019Utils;
+import year2019.utils.NumberTheory;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class Day12 implements IAocTask {
+    private static final int AXES_COUNT = 3;
+    /**
+     * below it the pairwise gravity is faster, see {@link Day12GravityBenchmark}
+     */
+    static final int SORTED_GRAVITY_MIN_MOONS = 16;
+
     @Override
     public String getFileName() {
         return "aoc2019/input_12.txt";
@@ -21,48 +29,43 @@ public class Day12 implements IAocTask {
     }
 
     private int calculateEnergy(List<Moon> moons, int steps) {
-//        System.out.printf("--- step %d ---%n", 0);
-        moons.forEach(System.out::println);
-        for (int step = 1; step <= steps; step++) {
-            for (int axis = 0; axis < 3; axis++)
-                refreshPositionsAndVelocities(moons, axis);
+        AxisState[] axes = createAxes(moons);
+        for (AxisState axis : axes) {
+            for (int step = 0; step < steps; step++) {
+                axis.step();
+            }
         }
-        return moons.stream().map(this::calculateMoonEnergy).reduce(Integer::sum).orElse(-1);
-    }
-
-    private void refreshPositionsAndVelocities(List<Moon> moons, int axis) {
-        List<Moon> prevState = new ArrayList<>(moons);
-        for (Moon moon : prevState) {
-            for (Moon other : prevState.stream().filter(m -> m.id != moon.id).collect(Collectors.toCollection(ArrayList::new))) {
-                if (moon.id < other.id) continue;
-                Moon updatedMoon = moons.get(moon.id - 1);
-                Moon updatedOther = moons.get(other.id - 1);
 
-                int[] velocity = updatedMoon.velocity;
-                int[] otherVel = updatedOther.velocity;
-
-                velocity[axis] += Integer.compare(other.position[axis], moon.position[axis]);
-                otherVel[axis] += Integer.compare(moon.position[axis], other.position[axis]);
+        int energy = 0;
+        for (int moon = 0; moon < moons.size(); moon++) {
+            int potentialEnergy = 0;
+            int kineticEnergy = 0;
+            for (AxisState axis : axes) {
+                potentialEnergy += Math.abs(axis.positions[moon]);
+                kineticEnergy += Math.abs(axis.velocities[moon]);
             }
+            energy += potentialEnergy * kineticEnergy;
         }
-        moons.forEach(moon -> updateMoonPosition(moon, axis));
-        //System.out.printf("--- step %d ---%n", step);
-//        moons.forEach(System.out::println);
-    }
-
-    private void updateMoonPosition(Moon moon, int axis) {
-        moon.position[axis] += moon.velocity[axis];
+        return energy;
     }
 
-    private int calculateMoonEnergy(Moon m) {
-        return Arrays.stream(m.velocity).map(Math::abs).sum() * Arrays.stream(m.position).map(Math::abs).sum();
+    /**
+     * The axes are independent - the velocity change along an axis depends only on the positions along it
+     */
+    private AxisState[] createAxes(List<Moon> moons) {
+        AxisState[] axes = new AxisState[AXES_COUNT];
+        for (int axis = 0; axis < AXES_COUNT; axis++) {
+            int[] positions = new int[moons.size()];
+            for (int moon = 0; moon < moons.size(); moon++) {
+                positions[moon] = moons.get(moon).position[axis];
+            }
+            axes[axis] = new AxisState(positions);
+        }
+        return axes;
     }
 
     private List<Moon> loadMoons(List<String> lines) {
-        List<Moon> moons = lines.stream().map(this::createMoon).collect(Collectors.toCollection(ArrayList::new));
-        final int[] id = {1};
-        moons.forEach(moon -> moon.id = id[0]++);
-        return moons;
+        return lines.stream().map(this::createMoon).collect(Collectors.toCollection(ArrayList::new));
     }
 
     private Moon createMoon(String in) {
@@ -81,94 +84,132 @@ public class Day12 implements IAocTask {
     @Override
     public void solvePartTwo(List<String> lines) {
         List<Moon> moons = loadMoons(lines);
-        List<Moon> initialState = loadMoons(lines);
-        long cycles = getCyclePeriod(moons, initialState);
+        long cycles = getCyclePeriod(moons);
         System.out.println(cycles);
     }
 
-    private long getCyclePeriod(List<Moon> moons, List<Moon> initialState) {
-        long[] cycleLengths = {1L, 1L, 1L};
-        for (int axis = 0; axis < 3; axis++) {
-            refreshPositionsAndVelocities(moons, axis);
-            while (!isSame(moons, initialState, axis)) {
-                refreshPositionsAndVelocities(moons, axis);
-                cycleLengths[axis]++;
-            }
-        }
+    /**
+     * The whole system repeats when all the axes do at once - after the least common multiple of their periods
+     */
+    private long getCyclePeriod(List<Moon> moons) {
+        long[] cycleLengths = Arrays.stream(createAxes(moons))
+                .parallel()
+                .mapToLong(AxisState::findPeriod)
+                .toArray();
         System.out.println(Arrays.toString(cycleLengths));
-        Map<Integer, Integer> divisors = createDivisors(cycleLengths);
-        final long[] lcm = {1};
-        System.out.println("--- divisors ---");
-        divisors.forEach((divisor, count) -> {
-            System.out.printf("%d: %d%n", divisor, count);
-            for (int i = 0; i < count; i++) {
-                lcm[0] *= divisor;
-            }
-        });
-        System.out.println();
-
-        return lcm[0];
+        return NumberTheory.lcm(cycleLengths);
     }
 
-    private Map<Integer, Integer> createDivisors(long[] cycleLengths) {
-        TreeSet<Integer> sieve = Aoc2019Utils.createSieve((int) Arrays.stream(cycleLengths).max().orElse(-1));
-        //System.out.println(sieve);
-        TreeMap<Integer, Integer> primeDivisorsCounter = new TreeMap<>();
-        for (long cycle : cycleLengths) {
-            updateCommonDivisors(cycle, primeDivisorsCounter, sieve);
+    /**
+     * Positions and velocities of all the moons along a single axis
+     */
+    static class AxisState {
+        final int[] positions;
+        final int[] velocities;
+        private final Gravity gravity;
+        /**
+         * position in the high and the moon index in the low bits, sorted by the {@link Gravity#SORTED}
+         */
+        private long[] sortedMoons;
+
+        AxisState(int[] positions) {
+            this(positions, positions.length < SORTED_GRAVITY_MIN_MOONS ? Gravity.PAIRWISE : Gravity.SORTED);
         }
-        return primeDivisorsCounter;
-    }
 
-    private void updateCommonDivisors(long cycle, TreeMap<Integer, Integer> primeDivisorsCounter, TreeSet<Integer> sieve) {
-        for (Integer prime : sieve) {
-            if (prime > cycle) {
-                return;
+        AxisState(int[] positions, Gravity gravity) {
+            this.positions = positions;
+            this.velocities = new int[positions.length];
+            this.gravity = gravity;
+        }
+
+        void step() {
+            if (gravity == Gravity.PAIRWISE) {
+                applyPairwiseGravity();
+            } else {
+                applySortedGravity();
             }
+            for (int moon = 0; moon < positions.length; moon++) {
+                positions[moon] += velocities[moon];
+            }
+        }
 
-            int factorRepeatCount = 0;
-            while (cycle > 0) {
-                if (cycle % prime == 0) {
-                    cycle /= prime;
-                    factorRepeatCount++;
-                } else {
-                    break;
+        private void applyPairwiseGravity() {
+            int moonsCount = positions.length;
+            for (int moon = 0; moon < moonsCount; moon++) {
+                for (int other = moon + 1; other < moonsCount; other++) {
+                    int pull = Integer.compare(positions[other], positions[moon]);
+                    velocities[moon] += pull;
+                    velocities[other] -= pull;
                 }
             }
+        }
 
-            Integer count = primeDivisorsCounter.get(prime);
-            if (count == null || count < factorRepeatCount) {
-                primeDivisorsCounter.put(prime, factorRepeatCount);
+        /**
+         * Every moon is pulled up by the moons above and down by the moons below it - both counts come from the rank
+         * of its position among the sorted ones, O(n log n) instead of comparing all the pairs
+         */
+        private void applySortedGravity() {
+            int moonsCount = positions.length;
+            if (sortedMoons == null) {
+                sortedMoons = new long[moonsCount];
+            }
+            for (int moon = 0; moon < moonsCount; moon++) {
+                sortedMoons[moon] = (long) positions[moon] << 32 | moon;
+            }
+            Arrays.sort(sortedMoons);
+
+            int rank = 0;
+            while (rank < moonsCount) {
+                int position = (int) (sortedMoons[rank] >> 32);
+                int sameEnd = rank + 1;
+                while (sameEnd < moonsCount && (int) (sortedMoons[sameEnd] >> 32) == position) {
+                    sameEnd++;
+                }
+                int pull = (moonsCount - sameEnd) - rank;
+                for (int i = rank; i < sameEnd; i++) {
+                    velocities[(int) sortedMoons[i]] += pull;
+                }
+                rank = sameEnd;
             }
         }
-    }
 
-    private boolean isSame(List<Moon> moons, List<Moon> initialState, int axis) {
-        for (Moon moon : moons) {
-            Moon initial = initialState.get(moon.id - 1);
-            if (initial.velocity[axis] != moon.velocity[axis] || initial.position[axis] != moon.position[axis]) {
-                return false;
-            }
+        /**
+         * @return number of steps after which the axis returns to its current state
+         */
+        long findPeriod() {
+            int[] initialPositions = positions.clone();
+            int[] initialVelocities = velocities.clone();
+            long steps = 0;
+            do {
+                step();
+                steps++;
+            } while (!Arrays.equals(positions, initialPositions) || !Arrays.equals(velocities, initialVelocities));
+            return steps;
         }
-        return true;
+    }
+
+    enum Gravity {
+        /**
+         * compares all the pairs, O(n^2) per step, the fastest for a few moons
+         */
+        PAIRWISE,
+        /**
+         * velocity changes from the ranks of the sorted positions, O(n log n) per step
+         */
+        SORTED
     }
 
     static class Moon {
-        int id;
         int[] position;
-        int[] velocity;
 
         public Moon(int[] position) {
             assert position.length == 3;
             this.position = position;
-            this.velocity = new int[3];
         }
 
         @Override
         public String toString() {
-            return String.format("pos<x=%4d, y=%4d, z=%4d>, vel=<x=%4d, y=%4d, z=%4d>",
-                    position[0], position[1], position[2],
-                    velocity[0], velocity[1], velocity[2]);
+            return String.format("pos<x=%4d, y=%4d, z=%4d>", position[0], position[1], position[2]);
         }
     }
 }
@@ -0,0 +1,52 @@
+package year2019;
+
+import java.util.Random;
+
+/**
+ * Compares the {@link Day12.Gravity} modes of the {@link Day12.AxisState} for growing numbers of moons.
+ * Run with the main method, every measurement is preceded by a warm up of the same length.
+ */
+public class Day12GravityBenchmark {
+    private static final int[] MOONS_COUNTS = {4, 8, 16, 32, 64, 128, 256, 1024, 4096};
+    private static final long STEPS_PER_MEASUREMENT = 50_000_000L;
+    private static final int MAX_STEPS = 1_000_000;
+    private static final int POSITIONS_RANGE = 10_000;
+    private static final long SEED = 2019;
+
+    public static void main(String[] args) {
+        System.out.println("moons | pairwise [ns/step] | sorted [ns/step]");
+        for (int moonsCount : MOONS_COUNTS) {
+            int steps = (int) Math.max(10, Math.min(MAX_STEPS, STEPS_PER_MEASUREMENT / moonsCount / moonsCount));
+            double pairwise = measure(moonsCount, steps, Day12.Gravity.PAIRWISE);
+            double sorted = measure(moonsCount, steps, Day12.Gravity.SORTED);
+            System.out.printf("%5d | %18.1f | %16.1f%n", moonsCount, pairwise, sorted);
+        }
+    }
+
+    /**
+     * @return average time of a single step in nanoseconds
+     */
+    private static double measure(int moonsCount, int steps, Day12.Gravity gravity) {
+        runSteps(moonsCount, steps, gravity);
+        long start = System.nanoTime();
+        int checksum = runSteps(moonsCount, steps, gravity);
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Integer.MIN_VALUE) {
+            System.out.println("unlikely checksum, keeps the simulation from being optimized away");
+        }
+        return (double) elapsed / steps;
+    }
+
+    private static int runSteps(int moonsCount, int steps, Day12.Gravity gravity) {
+        Random random = new Random(SEED);
+        int[] positions = new int[moonsCount];
+        for (int moon = 0; moon < moonsCount; moon++) {
+            positions[moon] = random.nextInt(POSITIONS_RANGE) - POSITIONS_RANGE / 2;
+        }
+        Day12.AxisState axis = new Day12.AxisState(positions, gravity);
+        for (int step = 0; step < steps; step++) {
+            axis.step();
+        }
+        return axis.positions[0] ^ axis.velocities[moonsCount - 1];
+    }
+}
@@ -1,20 +1,42 @@
 package year2019;
 
 import aoc.IAocTask;
+import utils.FileUtils;
 import year2019.utils.Aoc2019Utils;
 
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
 
 public class Day13 implements IAocTask {
-    String[][] gameBoard = new String[50][50];
-    final long[] maxX = {0};
-    final long[] maxY = {0};
-
-    final long[] ballX = {0};
-    final long[] paddleX = {0};
+    private static final String TRACE_FILE_NAME = "day13_trace.bin";
+
+    private static final int SCREEN_WIDTH = 50;
+    private static final int SCREEN_HEIGHT = 50;
+
+    /**
+     * records the part 2 run to TRACE_FILE_NAME, it can be replayed with {@link IntCodeTrace#replay}
+     */
+    boolean isTraceEnabled = false;
+
+    /**
+     * 0 - headless, n - renders every n-th frame (a frame is the screen state when the joystick is read)
+     */
+    int renderEveryNthFrame = 0;
+
+    /**
+     * tile types packed row by row, SCREEN_WIDTH tiles per row
+     */
+    private byte[] screen;
+    private int maxX;
+    private int maxY;
+    private int blocksCount;
+    private long score;
+
+    private int ballX;
+    private int ballY;
+    private int ballDx;
+    private int ballDy;
+    private int paddleX;
+    private int paddleY;
 
     @Override
     public String getFileName() {
@@ -24,173 +46,141 @@ public class Day13 implements IAocTask {
     @Override
     public void solvePartOne(List<String> lines) {
         long[] program = Aoc2019Utils.loadProgram(lines);
-        program = Aoc2019Utils.copyToLargerMemory(program, 6000);
-
-        final int[] outputCounter = {0};
-        final int[] blockCounter = {0};
-        final long[] x = {0};
-        final long[] y = {0};
-
-        Day05 intComp = new Day05();
-        intComp.setIoListeners(() -> {
-            return 1;
-        }, (output, instructionPointer) -> {
-            outputCounter[0]++;
-            int counter = outputCounter[0];
-            if (counter % 3 == 1) {
-                x[0] = output;
-            } else if (counter % 3 == 2) {
-                y[0] = output;
-            }
-
-            if (counter % 3 == 0) {
-                printTileInfo(output, x[0], y[0]);
-
-                if (output == TileType.BLOCK) {
-                    blockCounter[0]++;
-                }
-
-                if (x[0] == -1 && y[0] == 0) {
-                    System.out.printf("score %d%n", output);
-                } else {
-                    maxX[0] = Math.max(x[0], maxX[0]);
-                    maxY[0] = Math.max(y[0], maxY[0]);
-                }
-            }
-            return false;
-        }, () -> System.out.println(blockCounter[0]));
-
-        intComp.runProgram(program, new long[2]);
+        play(new IntCodeComputer(program));
+        System.out.println(blocksCount);
         printGameBoard();
     }
 
-    private void printGameBoard() {
-        for (int i = 0; i <= maxY[0]; i++) {
-            for (int j = 0; j <= maxX[0]; j++) {
-                System.out.print(gameBoard[i][j]);
-            }
-            System.out.println();
-        }
-    }
-
     @Override
     public void solvePartTwo(List<String> lines) {
         long[] program = Aoc2019Utils.loadProgram(lines);
-        program = Aoc2019Utils.copyToLargerMemory(program, 6000);
         setFreeGameMode(program);
-
-        final int[] outputCounter = {0};
-        final long[] x = {0};
-        final long[] y = {0};
-
-        HashMap<Integer, Integer> controlToMove = new HashMap<>();
-        controlToMove.put(8, -1);
-        controlToMove.put(9, 0);
-        controlToMove.put(0, 1);
-        final long[] score = {-1};
-
-        Scanner scanner = new Scanner(System.in);
-        Day05 intComp = new Day05();
-        intComp.setIoListeners(() -> {
-//            clearConsole();
-            System.out.println("-- #AOC2019 -- Breakout -- @kasptom --");
-            System.out.printf("SCORE: %5d%n", score[0]);
-            printGameBoard();
-            //Thread.sleep(5);
-            findBallAndTile();
-            System.out.println();
-//            System.out.println("input 8 9 0 to: move left, stay, move right");
-//            int input = scanner.nextInt();
-//            int finalInput = input;
-//            while (controlToMove.keySet().stream().noneMatch(control -> control.equals(finalInput))) {
-//                input = scanner.nextInt();
-//                scanner.nextLine();
-//            }
-//            return (long) controlToMove.get(input);
-            return Long.compare(ballX[0], paddleX[0]);
-        }, (output, instrPointer) -> {
-            outputCounter[0]++;
-            int counter = outputCounter[0];
-            if (counter % 3 == 1) {
-                x[0] = output;
-            } else if (counter % 3 == 2) {
-                y[0] = output;
-            }
-
-            if (counter % 3 == 0) {
-                if (x[0] == -1 && y[0] == 0) {
-                    score[0] = output;
-                } else {
-                    printTileInfo(output, x[0], y[0]);
-                    maxX[0] = Math.max(x[0], maxX[0]);
-                    maxY[0] = Math.max(y[0], maxY[0]);
-                }
-            }
-            return false;
-        }, () -> System.out.println(score[0]));
-
-        intComp.runProgram(program, new long[2]);
+        IntCodeComputer arcade = new IntCodeComputer(program);
+
+        IntCodeTrace.Recorder traceRecorder = isTraceEnabled
+                ? IntCodeTrace.record(FileUtils.getAbsolutePath(TRACE_FILE_NAME))
+                : null;
+        arcade.setTraceRecorder(traceRecorder);
+        play(arcade);
+        System.out.println(score);
+        if (traceRecorder != null) {
+            traceRecorder.close();
+            System.out.printf("trace saved: %s (%d steps)%n", TRACE_FILE_NAME, traceRecorder.getSteps());
+        }
     }
 
-    private void findBallAndTile() {
-        for (int i = 0; i <= maxX[0]; i++) {
-            for (int j = 0; j <= maxY[0]; j++) {
-                if (gameBoard[j][i].equals(TileType.IC_BALL)) {
-                    ballX[0] = i;
+    /**
+     * Runs the game until the program halts. The screen, ball and paddle are updated from the output triplets,
+     * the joystick follows the predicted ball landing position.
+     */
+    private void play(IntCodeComputer arcade) {
+        clearScreen();
+        long[] triplet = new long[3];
+        int outputCounter = 0;
+        int framesCounter = 0;
+        IntCodeComputer.Status status;
+        while ((status = arcade.run()) != IntCodeComputer.Status.HALTED) {
+            if (status == IntCodeComputer.Status.OUTPUT) {
+                triplet[outputCounter++] = arcade.getOutput();
+                if (outputCounter == 3) {
+                    outputCounter = 0;
+                    onTileOutput(triplet[0], triplet[1], triplet[2]);
                 }
-                if (gameBoard[j][i].equals(TileType.IC_HORIZONTAL_PADDLE)) {
-                    paddleX[0] = i;
+            } else {
+                framesCounter++;
+                if (renderEveryNthFrame > 0 && framesCounter % renderEveryNthFrame == 0) {
+                    render();
                 }
+                arcade.addInput(Integer.compare(predictBallLandingX(), paddleX));
             }
         }
     }
 
-    private void setFreeGameMode(long[] program) {
-        program[0] = 2;
+    void clearScreen() {
+        screen = new byte[SCREEN_WIDTH * SCREEN_HEIGHT];
+        maxX = maxY = blocksCount = 0;
+        score = -1;
+        ballDx = ballDy = 0;
     }
 
-    private void printTileInfo(long output, long x, long y) {
-        String elementName = getObjectName(output);
-        updateBoard(output, x, y);
-//        printTileInfo(x, y, elementName);
+    void onTileOutput(long x, long y, long value) {
+        if (x == -1 && y == 0) {
+            score = value;
+            return;
+        }
+        int tileX = (int) x;
+        int tileY = (int) y;
+        int idx = tileY * SCREEN_WIDTH + tileX;
+        if (screen[idx] == TileType.BLOCK) {
+            blocksCount--;
+        }
+        screen[idx] = (byte) value;
+        maxX = Math.max(tileX, maxX);
+        maxY = Math.max(tileY, maxY);
+
+        if (value == TileType.BLOCK) {
+            blocksCount++;
+        } else if (value == TileType.BALL) {
+            ballDx = Integer.signum(tileX - ballX);
+            ballDy = Integer.signum(tileY - ballY);
+            ballX = tileX;
+            ballY = tileY;
+        } else if (value == TileType.HORIZONTAL_PADDLE) {
+            paddleX = tileX;
+            paddleY = tileY;
+        }
     }
 
-    public void clearConsole() {
-        try {
-            final String os = System.getProperty("os.name");
-            if (os.contains("Windows")) {
-                new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
-            } else {
-                Runtime.getRuntime().exec("clear");
+    /**
+     * Follows the ball when it goes up or when a block can deflect it, otherwise simulates its fall (bouncing off
+     * the walls) down to the row above the paddle
+     */
+    int predictBallLandingX() {
+        if (ballDy <= 0 || ballY >= paddleY) {
+            return ballX;
+        }
+        int x = ballX;
+        int dx = ballDx;
+        for (int y = ballY; y < paddleY - 1; y++) {
+            if (screen[y * SCREEN_WIDTH + x + dx] == TileType.WALL) {
+                dx = -dx;
+            }
+            if (isBlockAt(x + dx, y) || isBlockAt(x, y + 1) || isBlockAt(x + dx, y + 1)) {
+                return ballX;
             }
-        } catch (InterruptedException | IOException e) {
-            e.printStackTrace();
+            x += dx;
         }
+        return x;
     }
 
-    private void updateBoard(long output, long x, long y) {
-        gameBoard[(int) y][(int) x] = getObjectSymbol(output);
+    private boolean isBlockAt(int x, int y) {
+        return screen[y * SCREEN_WIDTH + x] == TileType.BLOCK;
     }
 
-    private String getObjectName(long output) {
-        switch ((int) output) {
-            case TileType.EMPTY:
-                return "EMPTY";
-            case TileType.WALL:
-                return "WALL";
-            case TileType.BLOCK:
-                return "BLOCK";
-            case TileType.BALL:
-                return "BALL";
-            case TileType.HORIZONTAL_PADDLE:
-                return "PADDLE";
-            default:
-                return "UNKNOWN";
+    private void render() {
+        System.out.println("-- #AOC2019 -- Breakout -- @kasptom --");
+        System.out.printf("SCORE: %5d%n", score);
+        printGameBoard();
+        System.out.println();
+    }
+
+    private void printGameBoard() {
+        StringBuilder board = new StringBuilder();
+        for (int i = 0; i <= maxY; i++) {
+            for (int j = 0; j <= maxX; j++) {
+                board.append(getObjectSymbol(screen[i * SCREEN_WIDTH + j]));
+            }
+            board.append('\n');
         }
+        System.out.print(board);
     }
 
-    private String getObjectSymbol(long output) {
-        switch ((int) output) {
+    private void setFreeGameMode(long[] program) {
+        program[0] = 2;
+    }
+
+    private String getObjectSymbol(int tileType) {
+        switch (tileType) {
             case TileType.EMPTY:
                 return TileType.IC_EMPTY;
             case TileType.WALL:
@@ -206,10 +196,6 @@ public class Day13 implements IAocTask {
         }
     }
 
-    private void printTileInfo(long x, long l, String elementName) {
-        System.out.printf("%s at (x, y)= (%2d, %2d)%n", elementName, x, l);
-    }
-
     static class TileType {
         static final int EMPTY = 0;
         static final int WALL = 1;
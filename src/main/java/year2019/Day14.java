@@ -2,17 +2,13 @@ package year2019;
 
 import aoc.IAocTask;
 
-import java.awt.dnd.InvalidDnDOperationException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Day14 implements IAocTask {
-    private HashMap<ChemicalReagent, List<ChemicalReagent>> productToSubstrates;
-    private HashMap<ChemicalReagent, Integer> reagentsToInDegree;
+    private static final String FUEL = "FUEL";
+    private static final String ORE = "ORE";
+
     long availableOre = 1000000000000L;
-    long oreCount;
-    long fuelNeeded;
-    private boolean isPrintEnabled;
 
     @Override
     public String getFileName() {
@@ -21,175 +17,44 @@ public class Day14 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        isPrintEnabled = true;
-        fuelNeeded = 1;
-        calculateOreNeeded(lines);
-        System.out.println(oreCount);
+        ReactionGraph reactions = new ReactionGraph(lines);
+        System.out.println(reactions.getOreNeeded(1));
     }
 
+    /**
+     * Galloping search for the first fuel amount the ore is not enough for, then the binary search below it
+     */
     @Override
     public void solvePartTwo(List<String> lines) {
-//        fuelNeeded = 82892753 ; // small_3
-//        fuelNeeded = 5586022  ; // small_4
-//        fuelNeeded = 460664  ; // small_5
-        long oreCountForSingleFuel = oreCount;
-        long estimatedFuel = availableOre / oreCountForSingleFuel;
-        long lowerFuelBound = 1;
-        long upperFuelBound = 2 * estimatedFuel;
-
-        isPrintEnabled = false;
-        fuelNeeded = estimatedFuel;
-        long prevOreCount;
-
-        while (true) {
-            prevOreCount = oreCount;
-            calculateOreNeeded(lines);
-            System.out.printf("Fuel=%20d, Ore=%d%n", fuelNeeded, oreCount);
-            if (prevOreCount == oreCount) {
-               break; // found max possible ore
-            }
-            if (oreCount < availableOre) {
-                lowerFuelBound = fuelNeeded;
+        ReactionGraph reactions = new ReactionGraph(lines);
+        long oreForSingleFuel = reactions.getOreNeeded(1);
+        if (oreForSingleFuel > availableOre) {
+            throw new RuntimeException(String.format("Not enough ORE (%d) for a single FUEL (%d)", availableOre, oreForSingleFuel));
+        }
+
+        // leftovers only make the fuel cheaper, so this much fuel can always be made
+        long lowerFuelBound = availableOre / oreForSingleFuel;
+        long upperFuelBound = lowerFuelBound;
+        long step = 1;
+        do {
+            lowerFuelBound = upperFuelBound;
+            upperFuelBound = lowerFuelBound > Long.MAX_VALUE - step ? Long.MAX_VALUE : lowerFuelBound + step;
+            step = step > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : 2 * step;
+        } while (reactions.canProduce(upperFuelBound, availableOre));
+
+        while (upperFuelBound - lowerFuelBound > 1) {
+            long fuel = lowerFuelBound + (upperFuelBound - lowerFuelBound) / 2;
+            if (reactions.canProduce(fuel, availableOre)) {
+                lowerFuelBound = fuel;
             } else {
-                upperFuelBound = fuelNeeded;
+                upperFuelBound = fuel;
             }
-            fuelNeeded = (lowerFuelBound + upperFuelBound) / 2;
         }
 
-        System.out.printf("Max fuel (%d) to buy for 1e12 ORE: %d", fuelNeeded, prevOreCount);
+        System.out.printf("Max fuel (%d) to buy for 1e12 ORE: %d%n", lowerFuelBound, reactions.getOreNeeded(lowerFuelBound));
     }
 
-    private void calculateOreNeeded(List<String> lines) {
-        productToSubstrates = loadRequirements(lines);
-        reagentsToInDegree = getProductsWithInDegrees(productToSubstrates);
-        if (isPrintEnabled) {
-            System.out.println(productToSubstrates.size());
-        }
-
-        List<ChemicalReagent> chemicalsToChange = new ArrayList<>();
-        chemicalsToChange.add(new ChemicalReagent("FUEL", fuelNeeded));
-
-        while (reagentsToInDegree.keySet().size() > 0) {
-            ChemicalReagent product = reagentsToInDegree.keySet().stream()
-                    .filter(prod -> reagentsToInDegree.get(prod) == 0) // condition 1: product is not a substrate of any other chemical
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("No product with inDegree == 0"));
-
-            List<ChemicalReagent> substrates = productToSubstrates.get(product);
-            if (isPrintEnabled) {
-                System.out.printf("%n-----Substituting product %s -> %s%n", product, substrates);
-            }
-
-            List<ChemicalReagent> newChemicalsToChange = new ArrayList<>();
-            for (ChemicalReagent chemical : chemicalsToChange) {
-                List<ChemicalReagent> chemicalRequirements = getRequirements(chemical);
-                newChemicalsToChange.addAll(chemicalRequirements);
-            }
-            newChemicalsToChange = mergeDuplicatedChemicals(newChemicalsToChange);
-            chemicalsToChange = newChemicalsToChange;
-
-            // decrement the inDegrees of the substrates
-            productToSubstrates.remove(product);
-            if (reagentsToInDegree.remove(product) == null)
-                throw new RuntimeException(String.format("Could not find %s to remove", product));
-            if (substrates != null && !product.name.equals("ORE")) {
-                substrates.stream().filter(subs -> !subs.name.equals("ORE"))
-                        .forEach(substrate -> reagentsToInDegree.put(substrate, reagentsToInDegree.get(substrate) - 1));
-            } else throw new RuntimeException("Only ORE can have no substrates");
-        }
-        oreCount = chemicalsToChange.get(0).quantity;
-    }
-
-    private HashMap<ChemicalReagent, Integer> getProductsWithInDegrees(HashMap<ChemicalReagent, List<ChemicalReagent>> productToSubstrates) {
-        HashMap<ChemicalReagent, Integer> productToInDegree = new HashMap<>();
-        productToSubstrates.keySet().forEach(product -> productToInDegree.put(product, 0));
-
-        for (ChemicalReagent product : productToSubstrates.keySet()) {
-            updateInboundDegree(productToSubstrates, product, productToInDegree);
-        }
-
-        productToInDegree.put(new ChemicalReagent("FUEL", fuelNeeded), 0);
-        return productToInDegree;
-    }
-
-    private void updateInboundDegree(HashMap<ChemicalReagent, List<ChemicalReagent>> productToSubstrates, ChemicalReagent product, HashMap<ChemicalReagent, Integer> productToInDegree) {
-        List<ChemicalReagent> substrates = productToSubstrates.get(product);
-        for (ChemicalReagent substrate : substrates) {
-            productToSubstrates.keySet()
-                    .stream()
-                    .filter(v -> v.name.equals(substrate.name))
-                    .forEach(v -> productToInDegree.put(v, productToInDegree.get(v) + 1));
-        }
-    }
-
-    private List<ChemicalReagent> mergeDuplicatedChemicals(List<ChemicalReagent> newChemicalsToChange) {
-        if (isPrintEnabled) {
-            System.out.print("merging: " + newChemicalsToChange);
-        }
-        ArrayList<ChemicalReagent> merged = new ArrayList<>();
-        HashSet<String> names = newChemicalsToChange.stream().map(chemical -> chemical.name).collect(Collectors.toCollection(HashSet::new));
-        for (String name : names) {
-            long sameChemicalsOverallQuantity = newChemicalsToChange.stream().filter(chem -> chem.name.equals(name))
-                    .map(chem -> chem.quantity).reduce(this::checkAndSum).orElse(-1L);
-            if (sameChemicalsOverallQuantity == -1L) throw new RuntimeException();
-            merged.add(new ChemicalReagent(name, sameChemicalsOverallQuantity));
-        }
-        if (isPrintEnabled) {
-            System.out.println("\n      -> " + merged);
-        }
-        return merged;
-    }
-
-    private Long checkAndSum(Long a, Long b) {
-        if (Long.MAX_VALUE - a < b || Long.MAX_VALUE - b < a) {
-            throw new RuntimeException("TOO BIG VALUES TO MERGE");
-        }
-        return a + b;
-    }
-
-    private List<ChemicalReagent> getRequirements(ChemicalReagent chemical) {
-        List<ChemicalReagent> chemicalRequirements = new ArrayList<>();
-        if (reagentsToInDegree.containsKey(chemical) && reagentsToInDegree.get(chemical) != 0) {
-            chemicalRequirements.add(chemical);
-            return chemicalRequirements;
-        }
-
-        List<ChemicalReagent> materials = productToSubstrates.get(chemical);
-
-        ChemicalReagent product = productToSubstrates.keySet().stream().filter(prod -> prod.name.equals(chemical.name))
-                .findFirst().orElse(null);
-
-        if (product == null && chemical.name.equals("ORE")) {
-            chemicalRequirements.add(chemical);
-            return chemicalRequirements;
-        } else if (product == null) {
-            throw new InvalidDnDOperationException("NULL producs for ORE");
-        }
-
-        double multiplier = product.quantity > chemical.quantity
-                ? 1.0
-                : Math.ceil((double) chemical.quantity / (double) product.quantity);
-
-        materials.forEach(material -> chemicalRequirements.add(new ChemicalReagent(material.name, (long) (material.quantity * multiplier))));
-        return chemicalRequirements;
-    }
-
-    private HashMap<ChemicalReagent, List<ChemicalReagent>> loadRequirements(List<String> lines) {
-        HashMap<ChemicalReagent, List<ChemicalReagent>> requirements = new HashMap<>();
-        lines.forEach(line -> updateRequirements(requirements, line));
-        return requirements;
-    }
-
-    private void updateRequirements(HashMap<ChemicalReagent, List<ChemicalReagent>> requirements, String line) {
-        String[] productsToSubstrates = line.split("=>");
-        String[] substrates = productsToSubstrates[0].split(",");
-
-        List<ChemicalReagent> product = convertToChemicals(productsToSubstrates[1]);
-        List<ChemicalReagent> chemicalIngredients = convertToChemicals(substrates);
-        requirements.put(product.get(0), chemicalIngredients);
-    }
-
-    private List<ChemicalReagent> convertToChemicals(String... ingredients) {
+    private static List<ChemicalReagent> convertToChemicals(String... ingredients) {
         List<ChemicalReagent> chemicals = new ArrayList<>();
         for (String ingredientStr : ingredients) {
             String[] countAndName = ingredientStr.trim().split(" ");
@@ -200,6 +65,123 @@ public class Day14 implements IAocTask {
         return chemicals;
     }
 
+    /**
+     * Reactions compiled into the arrays indexed by the chemical id. The products are kept in the topological order
+     * (FUEL first, ORE last), so the needs of every chemical are known before its reaction is run.
+     */
+    static class ReactionGraph {
+        private final int chemicalsCount;
+        private final int fuel;
+        private final int ore;
+        /**
+         * chemical ids, every chemical comes before its substrates
+         */
+        private final int[] topologicalOrder;
+        private final long[] producedQuantities;
+        private final int[][] substrates;
+        private final long[][] substrateQuantities;
+
+        ReactionGraph(List<String> lines) {
+            Map<String, Integer> ids = new HashMap<>();
+            List<ChemicalReagent> products = new ArrayList<>();
+            List<List<ChemicalReagent>> reactionsSubstrates = new ArrayList<>();
+            for (String line : lines) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] productsToSubstrates = line.split("=>");
+                products.add(convertToChemicals(productsToSubstrates[1]).get(0));
+                reactionsSubstrates.add(convertToChemicals(productsToSubstrates[0].split(",")));
+            }
+            products.forEach(product -> ids.putIfAbsent(product.name, ids.size()));
+            ids.putIfAbsent(ORE, ids.size());
+            reactionsSubstrates.forEach(reaction -> reaction.forEach(substrate -> {
+                if (!ids.containsKey(substrate.name)) {
+                    throw new RuntimeException(String.format("No reaction produces %s", substrate.name));
+                }
+            }));
+            if (!ids.containsKey(FUEL)) {
+                throw new RuntimeException("No reaction produces FUEL");
+            }
+
+            chemicalsCount = ids.size();
+            fuel = ids.get(FUEL);
+            ore = ids.get(ORE);
+            producedQuantities = new long[chemicalsCount];
+            substrates = new int[chemicalsCount][0];
+            substrateQuantities = new long[chemicalsCount][0];
+            for (int reaction = 0; reaction < products.size(); reaction++) {
+                int product = ids.get(products.get(reaction).name);
+                if (product == ore || producedQuantities[product] != 0) {
+                    throw new RuntimeException(String.format("%s is produced by more than a single reaction", products.get(reaction).name));
+                }
+                List<ChemicalReagent> reactionSubstrates = reactionsSubstrates.get(reaction);
+                producedQuantities[product] = products.get(reaction).quantity;
+                substrates[product] = reactionSubstrates.stream().mapToInt(substrate -> ids.get(substrate.name)).toArray();
+                substrateQuantities[product] = reactionSubstrates.stream().mapToLong(substrate -> substrate.quantity).toArray();
+            }
+            topologicalOrder = sortTopologically();
+        }
+
+        /**
+         * Kahn's algorithm, a chemical is ready once all the reactions consuming it are
+         */
+        private int[] sortTopologically() {
+            int[] inDegrees = new int[chemicalsCount];
+            for (int[] productSubstrates : substrates) {
+                for (int substrate : productSubstrates) {
+                    inDegrees[substrate]++;
+                }
+            }
+            int[] order = new int[chemicalsCount];
+            int head = 0;
+            int tail = 0;
+            for (int chemical = 0; chemical < chemicalsCount; chemical++) {
+                if (inDegrees[chemical] == 0) {
+                    order[tail++] = chemical;
+                }
+            }
+            while (head < tail) {
+                for (int substrate : substrates[order[head++]]) {
+                    if (--inDegrees[substrate] == 0) {
+                        order[tail++] = substrate;
+                    }
+                }
+            }
+            if (tail != chemicalsCount) {
+                throw new RuntimeException("The reactions contain a cycle");
+            }
+            return order;
+        }
+
+        /**
+         * @throws ArithmeticException if the needed amounts overflow a long
+         */
+        long getOreNeeded(long fuelAmount) {
+            long[] needed = new long[chemicalsCount];
+            needed[fuel] = fuelAmount;
+            for (int product : topologicalOrder) {
+                if (product == ore || needed[product] == 0) {
+                    continue;
+                }
+                long reactionsCount = (needed[product] - 1) / producedQuantities[product] + 1;
+                for (int i = 0; i < substrates[product].length; i++) {
+                    int substrate = substrates[product][i];
+                    needed[substrate] = Math.addExact(needed[substrate], Math.multiplyExact(reactionsCount, substrateQuantities[product][i]));
+                }
+            }
+            return needed[ore];
+        }
+
+        boolean canProduce(long fuelAmount, long availableOre) {
+            try {
+                return getOreNeeded(fuelAmount) <= availableOre;
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+    }
+
     static class ChemicalReagent {
         String name;
         long quantity;
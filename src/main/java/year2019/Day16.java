@@ -2,10 +2,23 @@ package year2019;
 
 import aoc.IAocTask;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 public class Day16 implements IAocTask {
-    private static final int[] BASE_PATTERN = new int[]{0, 1, 0, -1};
+    private static final int PHASE_CHUNK_SIZE = 256;
+    private static final int MESSAGE_LENGTH = 8;
+    /**
+     * C(n, k) for n, k < 5, enough for the Lucas' theorem mod 2 and mod 5
+     */
+    private static final int[][] SMALL_BINOMIALS = {
+            {1, 0, 0, 0, 0},
+            {1, 1, 0, 0, 0},
+            {1, 2, 1, 0, 0},
+            {1, 3, 3, 1, 0},
+            {1, 4, 6, 4, 1}
+    };
 
     @Override
     public String getFileName() {
@@ -16,18 +29,12 @@ public class Day16 implements IAocTask {
     public void solvePartOne(List<String> lines) {
         String received = lines.get(0).trim();
         int[] signal = readSignal(received);
-        int j;
         System.out.printf("signal length: %d\n", signal.length);
         int phasesNumber = 100;
-        HashMap<Integer, List<Integer>> positionToPattern = generatePositionPattern(signal.length);
 
-        for (j = 0; j < phasesNumber; j++) {
-            signal = runFlawedFrequencyTransmission(signal, positionToPattern);
-//            printDigits(signal, 0, j + 1, signal.length);
-//            printSum(signal);
-        }
+        signal = runFlawedFrequencyTransmission(signal, phasesNumber);
 
-        printEightDigits(signal, 0, j);
+        printEightDigits(signal, 0, phasesNumber);
     }
 
     @SuppressWarnings("unused")
@@ -37,42 +44,70 @@ public class Day16 implements IAocTask {
 
     @Override
     public void solvePartTwo(List<String> lines) {
-        String backup = lines.get(0).trim();
+        int[] signal = readSignal(lines.get(0).trim());
         int phasesNumber = 100;
         int signalRepeats = 10000;
-
-        String received = repeatSignal(backup, signalRepeats);
-        int[] signal = readSignal(received);
-
-        System.out.printf("signal length: %d\n", signal.length);
-
-        int j;
-        for (j = 0; j < phasesNumber; j++) {
-            runFastPartialFlawedFrequencyTransmission(signal);
-        }
+        System.out.printf("signal length: %d\n", signal.length * signalRepeats);
 
         int offset = getPartTwoOffset(signal);
-        printEightDigits(signal, offset, 100);
+        int[] message = decodeBackHalf(signal, signalRepeats, phasesNumber, offset, MESSAGE_LENGTH);
+        printEightDigits(message, 0, phasesNumber);
     }
 
-    private String repeatSignal(String backup, int signalRepeats) {
-        String received;
-        StringBuilder repeatedSignal = new StringBuilder();
-        for (int i = 0; i < signalRepeats; i++) {
-            repeatedSignal.append(backup);
+    /**
+     * In the back half of the signal the pattern is 0 before the digit and 1 from it on, so after p phases
+     * the digit i is sum over k of C(k + p - 1, p - 1) * signal[i + k], mod 10. Only the requested digits are
+     * computed, in a single pass over the signal tail, the repeated signal is never built.
+     *
+     * @param signal        single copy of the signal
+     * @param signalRepeats how many times the signal is repeated
+     * @param offset        index of the first requested digit, in the back half of the repeated signal
+     * @param digitsCount   number of the requested digits
+     */
+    int[] decodeBackHalf(int[] signal, int signalRepeats, int phasesNumber, int offset, int digitsCount) {
+        long length = (long) signal.length * signalRepeats;
+        if (offset < length / 2 || offset + digitsCount > length) {
+            throw new RuntimeException(String.format("The offset %d is not in the back half of the %d digits long signal", offset, length));
+        }
+        int tailLength = (int) (length - offset);
+        byte[] coefficients = new byte[tailLength];
+        for (int k = 0; k < tailLength; k++) {
+            coefficients[k] = (byte) binomialMod10(k + phasesNumber - 1, phasesNumber - 1);
         }
-        received = repeatedSignal.toString();
-        return received;
-    }
 
-    private void runFastPartialFlawedFrequencyTransmission(int[] signal) {
-        for (int i = signal.length - 2; i >= signal.length / 2; i--) {
-            signal[i] = signal[i + 1] + signal[i];
+        long[] sums = new long[digitsCount];
+        for (int m = 0; m < tailLength; m++) {
+            int value = signal[(offset + m) % signal.length];
+            for (int digit = 0; digit < digitsCount && digit <= m; digit++) {
+                sums[digit] += coefficients[m - digit] * value;
+            }
         }
+        return Arrays.stream(sums).mapToInt(sum -> (int) (sum % 10)).toArray();
+    }
+
+    /**
+     * C(n, k) mod 10 from C(n, k) mod 2 and mod 5 (Lucas' theorem) combined with the Chinese remainder theorem
+     */
+    static int binomialMod10(int n, int k) {
+        return (5 * binomialModPrime(n, k, 2) + 6 * binomialModPrime(n, k, 5)) % 10;
+    }
 
-        for (int i = signal.length / 2; i < signal.length; i++) {
-            signal[i] = signal[i] % 10;
+    /**
+     * Lucas' theorem - product of the binomial coefficients of the base p digits of n and k
+     */
+    private static int binomialModPrime(int n, int k, int p) {
+        int result = 1;
+        while (n > 0 || k > 0) {
+            int nDigit = n % p;
+            int kDigit = k % p;
+            if (kDigit > nDigit) {
+                return 0;
+            }
+            result = result * SMALL_BINOMIALS[nDigit][kDigit] % p;
+            n /= p;
+            k /= p;
         }
+        return result;
     }
 
     private int getPartTwoOffset(int[] signal) {
@@ -91,7 +126,7 @@ public class Day16 implements IAocTask {
         System.out.println();
     }
 
-    private int[] readSignal(String received) {
+    int[] readSignal(String received) {
         int[] signal = new int[received.length()];
         final int[] i = {0};
         Arrays.stream(received.trim().split(""))
@@ -100,54 +135,49 @@ public class Day16 implements IAocTask {
         return signal;
     }
 
-    private int[] runFlawedFrequencyTransmission(int[] signal, HashMap<Integer, List<Integer>> positionToPattern) {
-        int[] transformed = new int[signal.length];
-        System.arraycopy(signal, 0, transformed, 0, transformed.length);
-
-        transform(transformed, signal, positionToPattern);
-
-        return transformed;
-    }
-
-    private HashMap<Integer, List<Integer>> generatePositionPattern(int length) {
-        int position;
-        HashMap<Integer, List<Integer>> positionToPattern = new HashMap<>();
-        for (int idx = 0; idx < length; idx++) {
-            position = idx + 1;
-            List<Integer> pattern = getPatternForPosition(position);
-            positionToPattern.put(position, pattern);
-        }
-        return positionToPattern;
-    }
-
-    private List<Integer> getPatternForPosition(int repeats) {
-        List<Integer> pattern = new ArrayList<>();
-        for (Integer value : BASE_PATTERN) {
-            for (int i = 0; i < repeats; i++) {
-                pattern.add(value);
+    /**
+     * Output digit i is the sum of the signal blocks of length i + 1 multiplied by +1 minus the ones multiplied
+     * by -1. Every block sum is read from the prefix sums, so a digit takes n / (i + 1) operations and the whole
+     * phase O(n log n). The output digits are computed in parallel chunks, the two buffers are swapped after
+     * every phase.
+     */
+    int[] runFlawedFrequencyTransmission(int[] signal, int phasesNumber) {
+        int length = signal.length;
+        int[] current = signal.clone();
+        int[] next = new int[length];
+        int[] prefixSums = new int[length + 1];
+        int chunksCount = (length + PHASE_CHUNK_SIZE - 1) / PHASE_CHUNK_SIZE;
+
+        for (int phase = 0; phase < phasesNumber; phase++) {
+            for (int i = 0; i < length; i++) {
+                prefixSums[i + 1] = prefixSums[i] + current[i];
             }
+            int[] output = next;
+            IntStream.range(0, chunksCount)
+                    .parallel()
+                    .forEach(chunk -> {
+                        int end = Math.min(length, (chunk + 1) * PHASE_CHUNK_SIZE);
+                        for (int idx = chunk * PHASE_CHUNK_SIZE; idx < end; idx++) {
+                            output[idx] = transformPosition(prefixSums, idx);
+                        }
+                    });
+            next = current;
+            current = output;
         }
-        Integer removed = pattern.remove(0);
-        pattern.add(removed);
-        return pattern;
-    }
-
-    private void transform(int[] transformed, int[] signal, HashMap<Integer, List<Integer>> positionToPattern) {
-        for (int idx = 0; idx < transformed.length; idx++) {
-            int position = idx + 1;
-            transformed[idx] = transformPosition(signal, positionToPattern.get(position));
-        }
+        return current;
     }
 
-    private int transformPosition(int[] signal, List<Integer> pattern) {
+    private int transformPosition(int[] prefixSums, int idx) {
+        int length = prefixSums.length - 1;
+        int blockLength = idx + 1;
         int sum = 0;
-        int patternIdx = 0;
-        for (int value : signal) {
-//            System.out.printf("%d * %d + ", value, pattern.get(patternIdx));
-            sum += pattern.get(patternIdx) * value;
-            patternIdx = (patternIdx + 1) % pattern.size();
+        for (int plusStart = idx; plusStart < length; plusStart += 4 * blockLength) {
+            sum += prefixSums[Math.min(length, plusStart + blockLength)] - prefixSums[plusStart];
+            int minusStart = plusStart + 2 * blockLength;
+            if (minusStart < length) {
+                sum -= prefixSums[Math.min(length, minusStart + blockLength)] - prefixSums[minusStart];
+            }
         }
-//        System.out.println();
         return Math.abs(sum) % 10;
     }
 }
@@ -2,14 +2,19 @@ package year2019;
 
 import aoc.IAocTask;
 import year2019.utils.Aoc2019Utils;
+import year2019.utils.LongIntHashMap;
 import year2019.utils.Pair;
 import year2019.utils.TwoDirNode;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Day17 implements IAocTask {
+    private static final int MAX_ROUTINE_LENGTH = 20;
+    private static final int MAX_MAIN_ROUTINE_CALLS = 10;
+    private static final String[] ROUTINE_NAMES = {"A", "B", "C"};
+
     private String scaffoldsView = "";
     char[][] twoDimView;
 
@@ -21,15 +26,9 @@ public class Day17 implements IAocTask {
     @Override
     public void solvePartOne(List<String> lines) {
         long[] program = Aoc2019Utils.loadProgram(lines);
-        program = Aoc2019Utils.copyToLargerMemory(program, 6000);
-        Day05 computer = new Day05();
-        computer.setIoListeners(() -> 0, (value, iPointer) -> {
-            scaffoldsView += getAscii(value);
-            return false;
-        }, () -> {
-//            System.out.printf("Done. Scaffolds view: %n%s%n", scaffoldsView)
-        });
-        computer.runProgram(program, new long[2]);
+        IntCodeAscii camera = new IntCodeAscii(new IntCodeComputer(program));
+        camera.run();
+        scaffoldsView = camera.getOutput();
 
         //scaffoldsView = scaffoldsView.substring(1) + "\n";
         twoDimView = getTwoDimView(scaffoldsView);
@@ -46,7 +45,6 @@ public class Day17 implements IAocTask {
     public void solvePartTwo(List<String> lines) {
         System.out.println("------- part 2 -----------");
         long[] program = Aoc2019Utils.loadProgram(lines);
-        program = Aoc2019Utils.copyToLargerMemory(program, 6000);
         wakeUpTheRobot(program);
 
         List<Move> allMovesSequence = getAllMovesSequence();
@@ -55,94 +53,24 @@ public class Day17 implements IAocTask {
                 .reduce((moves, moveB) -> moves + "," + moveB)
                 .orElse("");
 
-        HashMap<String, String> instructionNameToLrSequence = divideToInstructions(allMovesCodes);
         System.out.println("all moves " + allMovesSequence);
-
-        instructionNameToLrSequence.forEach((key, value) -> System.out.printf("%s: %s%n", key, value));
-
         System.out.println(allMovesCodes);
 
-        String[] abcInstructions = new String[] {allMovesCodes};
-        instructionNameToLrSequence.forEach((key, value) -> abcInstructions[0] = abcInstructions[0].replaceAll(value, key));
-        System.out.println(abcInstructions[0]);
-        // TODO odpalenie komend A, B, C
-
-        Day05 computer = new Day05();
-
-        char[] asciiAbcInstructions = addNewLine(abcInstructions[0]).toCharArray();
-        char[] asciiA = addNewLine(instructionNameToLrSequence.get("A")).toCharArray();
-        char[] asciiB = addNewLine(instructionNameToLrSequence.get("B")).toCharArray();
-        char[] asciiC = addNewLine(instructionNameToLrSequence.get("C")).toCharArray();
-
-        char[] input = new char[asciiAbcInstructions.length + asciiA.length + asciiB.length + asciiC.length + 2];
-        System.arraycopy(asciiAbcInstructions, 0, input, 0, asciiAbcInstructions.length);
-        System.arraycopy(asciiA, 0, input, asciiAbcInstructions.length, asciiA.length);
-        System.arraycopy(asciiB, 0, input, asciiAbcInstructions.length + asciiA.length, asciiB.length);
-        System.arraycopy(asciiC, 0, input, asciiAbcInstructions.length + asciiA.length + asciiB.length, asciiC.length);
-        input[input.length - 2] = 'n';
-        input[input.length - 1] = '\n';
-        final int[] idx = {0};
-
-        long[] lastOutput = new long[1];
-        computer.setIoListeners(() -> {
-            //System.out.printf("sending: input[%d] = %c%n", idx[0], input[idx[0]]);
-            return input[idx[0]++];
-        }, (output, instructionPointer) -> {
-            //System.out.printf("output: %d, ip: %d%n", output, instructionPointer);
-            lastOutput[0] = output;
-            return false;
-        }, () -> System.out.printf("stop, collected dust: %d%n", lastOutput[0]));
-
-        computer.runProgram(program, new long[2]);
-    }
-
-    private String addNewLine(String abcInstructions) {
-        return abcInstructions + "\n";
-    }
-
-    private HashMap<String, String> divideToInstructions(String allMovesCodes) {
-        HashMap<String, String> instructionToMoves = new HashMap<>();
-        String[] instructionNames = new String[] {"A", "B", "C"};
+        MovementFunctions movementFunctions = new MovementFunctionsSearch(allMovesSequence, MAX_ROUTINE_LENGTH, MAX_MAIN_ROUTINE_CALLS)
+                .find()
+                .orElseThrow(() -> new RuntimeException("Could not divide the moves into the A, B, C functions"));
+        System.out.println(movementFunctions);
 
-        for(String instructionName : instructionNames) {
-            String moveCodes = getLongestRepeatingSequence(allMovesCodes);
-            allMovesCodes = allMovesCodes.replaceFirst(moveCodes, "");
-            allMovesCodes = allMovesCodes.replaceAll(moveCodes, "X");
-
-            moveCodes = moveCodes.endsWith(",") ? moveCodes.substring(0, moveCodes.length() - 1) : moveCodes;
-            instructionToMoves.put(instructionName, moveCodes);
+        IntCodeAscii robot = new IntCodeAscii(new IntCodeComputer(program));
+        robot.sendLine(movementFunctions.mainRoutine);
+        for (String routine : movementFunctions.routines) {
+            robot.sendLine(routine);
         }
-
-        return instructionToMoves;
+        robot.sendLine("n");
+        robot.run();
+        System.out.printf("stop, collected dust: %d%n", robot.getLastNonAsciiOutput());
     }
 
-    private String getLongestRepeatingSequence(String movesCopy) {
-        int startIdx = 0;
-        while (movesCopy.charAt(startIdx) == 'X') {
-            startIdx++;
-        }
-
-        int endIdx = startIdx;
-        String currentLongest = movesCopy.substring(startIdx, endIdx + 1);
-
-        while (endIdx < movesCopy.length()) {
-            if (movesCopy.length() == endIdx + 1 || movesCopy.charAt(endIdx + 1) == 'X') {
-                return currentLongest;
-            }
-
-            String nextLongest = movesCopy.substring(startIdx, endIdx + 2);
-            if (movesCopy.substring(endIdx + 2, movesCopy.length() - 1).contains(nextLongest)) {
-                currentLongest = nextLongest;
-                endIdx++;
-            } else {
-                break;
-            }
-        }
-
-        return currentLongest;
-    }
-
-
     private List<Move> getAllMovesSequence() {
         ArrayList<Move> moves = new ArrayList<>();
         Pair<Integer> initialRobotPosition = new Pair<>(0, 0);
@@ -307,10 +235,6 @@ public class Day17 implements IAocTask {
         return xToCheck == -1 || yToCheck == -1 || xToCheck == twoDimView[0].length || yToCheck == twoDimView.length;
     }
 
-    private String getAscii(long value) {
-        return Character.valueOf((char) value).toString();
-    }
-
     @SuppressWarnings("unused")
     private String getTestView() {
         return "..#..........\n" +
@@ -385,9 +309,193 @@ public class Day17 implements IAocTask {
             this.steps = steps;
         }
 
+        Move(Turn turn, int steps) {
+            this.turn = turn;
+            this.steps = steps;
+        }
+
         @Override
         public String toString() {
             return String.format("%s,%d",turn.code, steps);
         }
     }
+
+    static class MovementFunctions {
+        final String mainRoutine;
+        final String[] routines;
+
+        MovementFunctions(String mainRoutine, String[] routines) {
+            this.mainRoutine = mainRoutine;
+            this.routines = routines;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder functions = new StringBuilder(String.format("Main: %s%n", mainRoutine));
+            for (int i = 0; i < routines.length; i++) {
+                functions.append(String.format("%s: %s%n", ROUTINE_NAMES[i], routines[i]));
+            }
+            return functions.toString();
+        }
+    }
+
+    /**
+     * Exhaustive search of the A, B, C movement functions. The moves are tokenized once into int codes, a new
+     * function is always defined at the first position not covered by the already defined ones, so the search is
+     * a backtracking over the function lengths. Failed (position, functions) states are remembered together with
+     * the number of main routine calls that were left. Every length of A is searched in parallel.
+     */
+    static class MovementFunctionsSearch {
+        private static final int FUNCTIONS_COUNT = ROUTINE_NAMES.length;
+
+        private final List<Move> moves;
+        private final int[] tokens;
+        private final int[] charsPrefixSum;
+        private final int maxRoutineLength;
+        private final int maxMainRoutineCalls;
+        /**
+         * width of a single field of the state key, enough for any position or length in [0, tokens.length]
+         */
+        private final int stateFieldBits;
+
+        MovementFunctionsSearch(List<Move> moves, int maxRoutineLength, int maxMainRoutineCalls) {
+            this.maxRoutineLength = maxRoutineLength;
+            this.maxMainRoutineCalls = maxMainRoutineCalls;
+            this.moves = moves;
+            tokens = new int[moves.size()];
+            charsPrefixSum = new int[moves.size() + 1];
+            for (int i = 0; i < moves.size(); i++) {
+                Move move = moves.get(i);
+                tokens[i] = 2 * move.steps + (move.turn == Turn.LEFT ? 0 : 1);
+                charsPrefixSum[i + 1] = charsPrefixSum[i] + move.turn.code.length() + 1 + String.valueOf(move.steps).length();
+            }
+            stateFieldBits = Integer.SIZE - Integer.numberOfLeadingZeros(tokens.length);
+            // position, start and length of B and C, defined functions count
+            int stateKeyBits = (2 * FUNCTIONS_COUNT - 1) * stateFieldBits + Integer.SIZE - Integer.numberOfLeadingZeros(FUNCTIONS_COUNT);
+            if (stateKeyBits >= Long.SIZE) {
+                throw new RuntimeException(String.format("too many moves (%d) to fit the search state in a long", tokens.length));
+            }
+        }
+
+        Optional<MovementFunctions> find() {
+            return IntStream.rangeClosed(1, tokens.length)
+                    .filter(length -> getRoutineLength(0, length) <= maxRoutineLength)
+                    .parallel()
+                    .mapToObj(firstFunctionLength -> new Attempt().searchWithFirstFunction(firstFunctionLength))
+                    .filter(Objects::nonNull)
+                    .findFirst();
+        }
+
+        /**
+         * @return number of characters of the routine made of the moves [start, start + length), with commas
+         */
+        private int getRoutineLength(int start, int length) {
+            return charsPrefixSum[start + length] - charsPrefixSum[start] + length - 1;
+        }
+
+        private class Attempt {
+            private final int[] starts = new int[FUNCTIONS_COUNT];
+            private final int[] lengths = new int[FUNCTIONS_COUNT];
+            private final int[] calls = new int[maxMainRoutineCalls];
+            private int definedCount = 0;
+            private int callsCount = 0;
+            private final LongIntHashMap failedStates = new LongIntHashMap();
+
+            MovementFunctions searchWithFirstFunction(int firstFunctionLength) {
+                define(0, firstFunctionLength);
+                return call(0, 0) ? toMovementFunctions() : null;
+            }
+
+            private boolean search(int position) {
+                if (position == tokens.length) {
+                    return true;
+                }
+                int callsLeft = maxMainRoutineCalls - callsCount;
+                if (callsLeft == 0) {
+                    return false;
+                }
+                long state = getStateKey(position);
+                if (failedStates.get(state, -1) >= callsLeft) {
+                    return false;
+                }
+
+                for (int function = 0; function < definedCount; function++) {
+                    if (isMatchingAt(function, position) && call(function, position)) {
+                        return true;
+                    }
+                }
+                if (definedCount < FUNCTIONS_COUNT) {
+                    for (int length = 1; position + length <= tokens.length && getRoutineLength(position, length) <= maxRoutineLength; length++) {
+                        define(position, length);
+                        if (call(definedCount - 1, position)) {
+                            return true;
+                        }
+                        definedCount--;
+                    }
+                }
+                failedStates.put(state, callsLeft);
+                return false;
+            }
+
+            private boolean call(int function, int position) {
+                calls[callsCount++] = function;
+                if (search(position + lengths[function])) {
+                    return true;
+                }
+                callsCount--;
+                return false;
+            }
+
+            private void define(int start, int length) {
+                starts[definedCount] = start;
+                lengths[definedCount] = length;
+                definedCount++;
+            }
+
+            private boolean isMatchingAt(int function, int position) {
+                int length = lengths[function];
+                if (position + length > tokens.length) {
+                    return false;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (tokens[starts[function] + i] != tokens[position + i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * position and the B, C functions (A is fixed for the attempt) packed into fixed-width fields of a single key
+             */
+            private long getStateKey(int position) {
+                long key = definedCount;
+                for (int function = 1; function < FUNCTIONS_COUNT; function++) {
+                    boolean isDefined = function < definedCount;
+                    key = key << stateFieldBits | (isDefined ? starts[function] : 0);
+                    key = key << stateFieldBits | (isDefined ? lengths[function] : 0);
+                }
+                return key << stateFieldBits | position;
+            }
+
+            private MovementFunctions toMovementFunctions() {
+                String mainRoutine = Arrays.stream(calls, 0, callsCount)
+                        .mapToObj(function -> ROUTINE_NAMES[function])
+                        .collect(Collectors.joining(","));
+                String[] routines = new String[FUNCTIONS_COUNT];
+                for (int function = 0; function < FUNCTIONS_COUNT; function++) {
+                    routines[function] = function < definedCount
+                            ? toRoutine(starts[function], lengths[function])
+                            : "";
+                }
+                return new MovementFunctions(mainRoutine, routines);
+            }
+
+            private String toRoutine(int start, int length) {
+                return moves.subList(start, start + length).stream()
+                        .map(Move::toString)
+                        .collect(Collectors.joining(","));
+            }
+        }
+    }
 }
@@ -1,342 +1,249 @@
 package year2019;
 
 import aoc.IAocTask;
-import year2019.utils.Aoc2019Utils;
-import year2019.utils.Pair;
+import year2019.utils.LongIntHashMap;
+import year2019.utils.IntLongMinHeap;
 
-import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Day18V2 implements IAocTask {
-
-    private static final List<Pair<Integer>> MOVES = Aoc2019Utils.createMoves();
-    private static final boolean ENABLE_DEBUG_PRINT = false;
-
-    String[][] maze;
-    HashSet<Pair<Integer>> vertices;
-    HashMap<String, Pair<Integer>> keysAndGatesCoordinates;
-    HashMap<Pair<Integer>, String> coordinatesToKeysAndGates;
-
-    Map<String, List<Path>> keyOrGateToPaths;
-    Map<String, Set<String>> keyDependencies;
-
-    int shortestPath;
-    List<String> keyOrderForShortestPath = null;
+    private static final char WALL = '#';
+    private static final char ENTRANCE = '@';
+    private static final char OPEN = '.';
 
     @Override
     public String getFileName() {
-        return "aoc2019/input_18_small_136.txt";
+        return "aoc2019/input_18.txt";
     }
 
     @Override
     public void solvePartOne(List<String> lines) {
-        loadMaze(lines);
-        shortestPath = Integer.MAX_VALUE;
-
-        keyOrGateToPaths = keysAndGatesCoordinates
-                .entrySet()
-                .stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        keyValue -> findShortestPaths(keyValue.getKey())
-                ));
-
-        printKeysOrGatesToPaths();
-
-        createKeyDependencies();
-
-        List<String[]> keyOrders = generatePossibleKeyPermutations();
-        int minPathCost = Integer.MAX_VALUE;
-        String[] minPath = null;
-
-        for (String[] keyOrder : keyOrders) {
-            int pathCost = computeCost(keyOrder, keyOrGateToPaths);
-            if (pathCost < minPathCost) {
-                minPathCost = pathCost;
-            }
-            minPath = keyOrder;
-        }
-        System.out.printf("Min cost: %d for path %s%n", minPathCost, Arrays.toString(minPath));
+        char[][] maze = loadMaze(lines);
+        int fewestSteps = new KeyVault(maze).collectAllKeys();
+        System.out.printf("fewest steps to collect all keys: %d%n", fewestSteps);
     }
 
-    private void createKeyDependencies() {
-        List<Path> paths = keyOrGateToPaths.get("@");
-        keyDependencies = new HashMap<>();
-
-        keysAndGatesCoordinates.keySet()
-                .stream()
-                .filter(key -> key.matches("[a-z]"))
-                .forEach(key -> updateKeyDependencies(key, paths));
-
-        int dependenciesCountLimit = keyDependencies.size() - 1;
-        keyDependencies.forEach((keyName, requiredKeys) -> {
-            int dependenciesCount = 0;
-            Set<String> dependencies = new HashSet<>(requiredKeys);
-            Queue<String> dependenciesQueue = new LinkedBlockingQueue<>(dependencies);
-            while (!dependenciesQueue.isEmpty()) {
-                dependenciesCount++;
-                if (dependenciesCount > dependenciesCountLimit) throw new RuntimeException("Cyclic dependency");
-                String requiredKey = dependenciesQueue.poll();
-                dependenciesQueue.addAll(keyDependencies.get(requiredKey));
-                dependencies.addAll(keyDependencies.get(requiredKey));
-            }
-            keyDependencies.put(keyName, dependencies);
-        });
+    @Override
+    public void solvePartTwo(List<String> lines) {
+        char[][] maze = loadMaze(lines);
+        splitEntrance(maze);
+        int fewestSteps = new KeyVault(maze).collectAllKeys();
+        System.out.printf("fewest steps of the robots to collect all keys: %d%n", fewestSteps);
     }
 
-    private void updateKeyDependencies(String keyName, List<Path> paths) {
-        Set<String> keyDependency = new HashSet<>();
-        keyDependencies.put(keyName, keyDependency);
-
-        for (Path path : paths) {
-            List<String> keysOrGates = path.keysAndGatesOrdered;
-            if (!keysOrGates.contains(keyName)) {
-                continue;
-            }
-
-            for(int i = 0; i< keysOrGates.size(); i++) {
-                if (keysOrGates.get(i).equals(keyName)) {
-                    for (int j = 0; j < i; j++) {
-                        if (keysOrGates.get(j).matches("[A-Z]")) {
-                            keyDependency.add(keysOrGates.get(j).toLowerCase()); // get the key name required to open the blocking gate
-                        }
-                    }
-                }
-            }
-        }
+    private char[][] loadMaze(List<String> lines) {
+        return lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .map(String::toCharArray)
+                .toArray(char[][]::new);
     }
 
-    private List<String[]> generatePossibleKeyPermutations() {
-        List<String> keyNames = keysAndGatesCoordinates
-                .keySet()
-                .stream().filter(key -> key.matches("[a-z]"))
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        List<String[]> permutations = new ArrayList<>();
-
-        for (String keyName : keyNames) {
-            if (isPossibleAndBetterThanCurrentBest(keyName, Collections.singletonList("@"))) {
-                List<String> newSelectedKeys = new ArrayList<>();
-                newSelectedKeys.add(keyName);
-                generatePossibleKeyPermutations(permutations, newSelectedKeys, keyNames);
+    /**
+     * Replaces the single entrance with the four ones separated by the walls:
+     * <pre>
+     * ...    @#@
+     * .@. -> ###
+     * ...    @#@
+     * </pre>
+     * Mazes with more entrances are left as they are.
+     */
+    private void splitEntrance(char[][] maze) {
+        List<int[]> entrances = new ArrayList<>();
+        for (int y = 0; y < maze.length; y++) {
+            for (int x = 0; x < maze[y].length; x++) {
+                if (maze[y][x] == ENTRANCE) {
+                    entrances.add(new int[]{x, y});
+                }
             }
         }
-
-        return permutations;
-    }
-
-    private void generatePossibleKeyPermutations(List<String[]> permutations, List<String> selectedKeys, List<String> allKeys) {
-        if (selectedKeys.size() > 1 && shortestPath <= computeCost(selectedKeys, keyOrGateToPaths, selectedKeys.size())) {
+        if (entrances.size() != 1) {
             return;
         }
-
-        if (selectedKeys.size() == allKeys.size()) {
-            String[] keys = new String[allKeys.size()];
-            for (int i = 0; i < keys.length; i++) {
-                keys[i] = selectedKeys.get(i);
+        int entranceX = entrances.get(0)[0];
+        int entranceY = entrances.get(0)[1];
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && maze[entranceY + dy][entranceX + dx] != OPEN) {
+                    throw new RuntimeException(String.format("The entrance [%d, %d] is not surrounded by the open tiles", entranceX, entranceY));
+                }
             }
-            shortestPath = computeCost(keys, keyOrGateToPaths);
-            keyOrderForShortestPath = selectedKeys;
-            System.out.printf("New best: %d, %s%n", shortestPath, keyOrderForShortestPath);
-            permutations.add(keys);
-            return;
         }
-
-        List<String> unusedKeys = allKeys.stream().filter(key -> !selectedKeys.contains(key)).collect(Collectors.toCollection(ArrayList::new));
-        for (String unusedKey : unusedKeys) {
-            if (isPossibleAndBetterThanCurrentBest(unusedKey, selectedKeys)) {
-                List<String> newSelectedKeys = new ArrayList<>(selectedKeys);
-                newSelectedKeys.add(unusedKey);
-                generatePossibleKeyPermutations(permutations, newSelectedKeys, allKeys);
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                maze[entranceY + dy][entranceX + dx] = dx != 0 && dy != 0 ? ENTRANCE : WALL;
             }
         }
     }
 
     /**
-     * Checks if selected keys allow to get the unused key
-     *
-     * @param unusedKey    unused key
-     * @param selectedKeys already 'found' keys
-     * @return true if it is possible, otherwise false
+     * The maze compressed into a graph of the keys and the entrances. Every edge (one BFS per node) keeps the walking
+     * distance, the doors on the way (as the bitmask of the keys opening them) and the keys passed on the way.
+     * The fewest steps come from Dijkstra over the (robot nodes, collected keys) states packed into longs, the costs
+     * are kept next to them in the queue.
      */
-    private boolean isPossibleAndBetterThanCurrentBest(String unusedKey, List<String> selectedKeys) {
-        Set<String> requiredKeys = keyDependencies.get(unusedKey);
-        if (!selectedKeys.containsAll(requiredKeys)) {
-            return false;
-        }
-        List<Path> paths = keyOrGateToPaths.get(selectedKeys.get(selectedKeys.size() - 1));
-        Path toKey = paths.stream().filter(path -> path.to.equals(unusedKey)).findFirst().orElse(null);
-        assert toKey != null;
-
-        HashSet<String> collectedKeys = new HashSet<>(selectedKeys);
-        for (int i = 0; i < toKey.keysAndGatesOrdered.size(); i++) {
-            String nextKeyOrGate = toKey.keysAndGatesOrdered.get(i);
-            if (nextKeyOrGate.matches("[a-z]")) {
-                collectedKeys.add(nextKeyOrGate);
-            } else if (nextKeyOrGate.matches("[A-Z]") && !collectedKeys.contains(nextKeyOrGate.toLowerCase())) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private int computeCost(String[] keyOrder, Map<String, List<Path>> keyOrGateToPath) {
-        return computeCost(Arrays.stream(keyOrder).collect(Collectors.toList()), keyOrGateToPath, keyOrder.length);
-    }
-
-    private int computeCost(List<String> keyOrder, Map<String, List<Path>> keyOrGateToPath, int length) {
-        int cost = 0;
-        for (int i = 0; i < length; i++) {
-            String from = i == 0 ? "@" : keyOrder.get(i-1);
-            String to = keyOrder.get(i);
-            cost += Objects.requireNonNull(keyOrGateToPath.get(from)
-                    .stream()
-                    .filter(path -> path.to.equals(to))
-                    .findFirst().orElse(null)).path.size();
-        }
-        return cost;
-    }
-
-    @Override
-    public void solvePartTwo(List<String> lines) {
-
-    }
-
-    private void loadMaze(List<String> lines) {
-        int height = lines.size();
-        int width = lines.get(0).length();
-        maze = new String[height][width];
-        vertices = new HashSet<>();
-        keysAndGatesCoordinates = new HashMap<>();
-        coordinatesToKeysAndGates = new HashMap<>();
-
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                maze[i][j] = lines.get(i).substring(j, j + 1);
-                if (!maze[i][j].equals("#")) {
-                    vertices.add(new Pair<>(j, i));
+    static class KeyVault {
+        private static final int KEYS_LIMIT = 26;
+        private static final int MAX_ROBOTS = 4;
+        private static final int NODE_BITS = 5;
+        private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+        private static final int KEYS_MASK = (1 << KEYS_LIMIT) - 1;
+        private static final int[][] MOVES = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+
+        private final char[][] maze;
+        private final int robotsCount;
+        /**
+         * keys are the nodes 0 - 25 (by the letter), the entrances follow them
+         */
+        private final int[] nodeCells = new int[KEYS_LIMIT + MAX_ROBOTS];
+        private final int width;
+        private int allKeys = 0;
+
+        /**
+         * walking distance between the nodes, -1 if not reachable
+         */
+        private final int[][] distances;
+        private final int[][] requiredDoors;
+        private final int[][] keysOnPath;
+
+        KeyVault(char[][] maze) {
+            this.maze = maze;
+            width = maze[0].length;
+
+            int entrancesCount = 0;
+            for (int y = 0; y < maze.length; y++) {
+                for (int x = 0; x < width; x++) {
+                    char tile = maze[y][x];
+                    if (isKey(tile)) {
+                        allKeys |= 1 << (tile - 'a');
+                        nodeCells[tile - 'a'] = y * width + x;
+                    } else if (tile == ENTRANCE) {
+                        if (entrancesCount == MAX_ROBOTS) {
+                            throw new RuntimeException(String.format("More than %d entrances in the maze", MAX_ROBOTS));
+                        }
+                        nodeCells[KEYS_LIMIT + entrancesCount++] = y * width + x;
+                    }
                 }
-                if (maze[i][j].matches("[A-Z]|[a-z]|@")) {
-                    keysAndGatesCoordinates.put(maze[i][j], new Pair<>(j, i));
-                    coordinatesToKeysAndGates.put(new Pair<>(j, i), maze[i][j]);
+            }
+            robotsCount = entrancesCount;
+
+            int nodesCount = KEYS_LIMIT + robotsCount;
+            distances = new int[nodesCount][];
+            requiredDoors = new int[nodesCount][];
+            keysOnPath = new int[nodesCount][];
+            for (int node = 0; node < nodesCount; node++) {
+                if (node >= KEYS_LIMIT || (allKeys >> node & 1) == 1) {
+                    findEdges(node);
                 }
             }
         }
-    }
-
-    /**
-     * Finds the shortest paths (Dijkstra) from the root to all other nodes in the grid based labyrinth.
-     * Collects the data about found keys
-     *
-     * @param root root of the paths
-     * @return paths
-     */
-    private List<Path> findShortestPaths(String root) {
-        HashMap<Pair<Integer>, Integer> unvisitedCost = new HashMap<>();
-        vertices.forEach(vertex -> unvisitedCost.put(vertex, Integer.MAX_VALUE)); // all with max cost
-
-        HashMap<Pair<Integer>, Pair<Integer>> childToParent = new HashMap<>();
-
-        int pathCost = 0;
-        Pair<Integer> currentPosition = keysAndGatesCoordinates.get(root);
-        unvisitedCost.put(currentPosition, pathCost);
-
-        while (!unvisitedCost.isEmpty() && currentPosition != null) {
-            pathCost = unvisitedCost.remove(currentPosition);
-            pathCost++;
 
-            for (Pair<Integer> move : MOVES) {
-                Pair<Integer> nextPosition = new Pair<>(currentPosition.x + move.x, currentPosition.y + move.y);
-                Integer cost = unvisitedCost.get(nextPosition);
-                if (cost != null && cost > pathCost) {
-                    childToParent.put(nextPosition, currentPosition);
-                    unvisitedCost.put(nextPosition, pathCost);
+        /**
+         * Breadth-first search from the node, fills its edges to all the keys
+         */
+        private void findEdges(int node) {
+            int cellsCount = maze.length * width;
+            int[] distance = new int[cellsCount];
+            int[] doors = new int[cellsCount];
+            int[] keys = new int[cellsCount];
+            Arrays.fill(distance, -1);
+            int[] queue = new int[cellsCount];
+            int head = 0;
+            int tail = 0;
+
+            int start = nodeCells[node];
+            distance[start] = 0;
+            queue[tail++] = start;
+            while (head < tail) {
+                int cell = queue[head++];
+                char tile = getTile(cell);
+                int passedDoors = doors[cell] | (isDoor(tile) ? 1 << (tile - 'A') : 0);
+                int passedKeys = keys[cell] | (isKey(tile) && cell != start ? 1 << (tile - 'a') : 0);
+                for (int[] move : MOVES) {
+                    int next = cell + move[1] * width + move[0];
+                    if (getTile(next) == WALL || distance[next] != -1) {
+                        continue;
+                    }
+                    distance[next] = distance[cell] + 1;
+                    doors[next] = passedDoors;
+                    keys[next] = passedKeys;
+                    queue[tail++] = next;
                 }
             }
 
-            currentPosition = getUnvisitedNodeWithLowestCost(unvisitedCost);
+            distances[node] = new int[KEYS_LIMIT];
+            requiredDoors[node] = new int[KEYS_LIMIT];
+            keysOnPath[node] = new int[KEYS_LIMIT];
+            for (int key = 0; key < KEYS_LIMIT; key++) {
+                int cell = nodeCells[key];
+                boolean isReachable = (allKeys >> key & 1) == 1 && key != node && distance[cell] > 0;
+                distances[node][key] = isReachable ? distance[cell] : -1;
+                requiredDoors[node][key] = doors[cell];
+                keysOnPath[node][key] = keys[cell];
+            }
         }
 
-        return mapToPaths(root, childToParent);
-    }
-
-    private Pair<Integer> getUnvisitedNodeWithLowestCost(HashMap<Pair<Integer>, Integer> unvisitedCost) {
-        Integer lowestCost = unvisitedCost.values().stream().min(Integer::compareTo).orElse(Integer.MAX_VALUE);
-        if (lowestCost == Integer.MAX_VALUE) {
-            return null;
-        }
-        return unvisitedCost
-                .keySet()
-                .stream()
-                .filter(key -> unvisitedCost.get(key).equals(lowestCost))
-                .findFirst().orElse(null);
-    }
+        /**
+         * @return fewest steps of all the robots together
+         */
+        int collectAllKeys() {
+            long start = 0;
+            for (int robot = 0; robot < robotsCount; robot++) {
+                start |= (long) (KEYS_LIMIT + robot) << getRobotShift(robot);
+            }
+            LongIntHashMap bestCosts = new LongIntHashMap();
+            IntLongMinHeap queue = new IntLongMinHeap();
+            bestCosts.put(start, 0);
+            queue.add(0, start);
+
+            while (!queue.isEmpty()) {
+                int cost = queue.peekPriority();
+                long state = queue.poll();
+                if (cost > bestCosts.get(state, Integer.MAX_VALUE)) {
+                    continue;
+                }
+                int keys = (int) state & KEYS_MASK;
+                if (keys == allKeys) {
+                    return cost;
+                }
 
-    /**
-     * Each path starts with the root and ends with one of the coordinates in {@link Day18V2#keysAndGatesCoordinates}
-     *
-     * @param root          name of the root node
-     * @param childToParent shortest paths from the root to all other available non-wall nodes
-     * @return list of paths that end with key or gate (or @)
-     */
-    private List<Path> mapToPaths(String root, HashMap<Pair<Integer>, Pair<Integer>> childToParent) {
-        return keysAndGatesCoordinates
-                .keySet()
-                .stream()
-                .filter(keyOrGate -> !keyOrGate.equals(root))
-                .map(keyOrGate -> {
-                    Path path = new Path(root, keyOrGate);
-                    Pair<Integer> rootCoordinates = keysAndGatesCoordinates.get(root);
-                    Pair<Integer> currentCoordinates = keysAndGatesCoordinates.get(keyOrGate);
-                    while (!currentCoordinates.equals(rootCoordinates)) {
-                        path.path.add(currentCoordinates);
-                        if (coordinatesToKeysAndGates.containsKey(currentCoordinates)) {
-                            path.keysAndGatesOrdered.add(coordinatesToKeysAndGates.get(currentCoordinates));
+                for (int robot = 0; robot < robotsCount; robot++) {
+                    int shift = getRobotShift(robot);
+                    int node = (int) (state >>> shift & NODE_MASK);
+                    for (int key = 0; key < KEYS_LIMIT; key++) {
+                        int distance = distances[node][key];
+                        if (distance == -1 || (keys >> key & 1) == 1
+                                || (requiredDoors[node][key] & ~keys) != 0 || (keysOnPath[node][key] & ~keys) != 0) {
+                            continue;
+                        }
+                        long nextState = (state & ~(NODE_MASK << shift)) | (long) key << shift | 1L << key;
+                        int nextCost = cost + distance;
+                        if (nextCost < bestCosts.get(nextState, Integer.MAX_VALUE)) {
+                            bestCosts.put(nextState, nextCost);
+                            queue.add(nextCost, nextState);
                         }
-                        currentCoordinates = childToParent.get(currentCoordinates);
                     }
-                    Collections.reverse(path.path);
-                    Collections.reverse(path.keysAndGatesOrdered);
-                    return path;
-                })
-                .collect(Collectors.toCollection(ArrayList::new));
-    }
-
-    private void printKeysOrGatesToPaths() {
-        if (!ENABLE_DEBUG_PRINT) {
-            return;
+                }
+            }
+            throw new RuntimeException("Cannot collect all the keys");
         }
 
-        keyOrGateToPaths.forEach((key, value) -> {
-            System.out.printf("%n---Paths from: %s---%n", key);
-            value.forEach(System.out::println);
-        });
-    }
-
-    static class Path {
+        private static int getRobotShift(int robot) {
+            return KEYS_LIMIT + robot * NODE_BITS;
+        }
 
-        String from;
-        String to;
-        List<Pair<Integer>> path;
-        List<String> keysAndGatesOrdered;
+        private char getTile(int cell) {
+            return maze[cell / width][cell % width];
+        }
 
-        public Path(String from, String to) {
-            this.from = from;
-            this.to = to;
-            path = new ArrayList<>();
-            keysAndGatesOrdered = new ArrayList<>();
+        private static boolean isKey(char tile) {
+            return tile >= 'a' && tile <= 'z';
         }
 
-        @Override
-        public String toString() {
-            return "Path{" +
-                    "from='" + from + '\'' +
-                    ", to='" + to + '\'' +
-                    ", path=" + path +
-                    ", keysAndGatesOrdered=" + keysAndGatesOrdered +
-                    '}';
+        private static boolean isDoor(char tile) {
+            return tile >= 'A' && tile <= 'Z';
         }
     }
 }
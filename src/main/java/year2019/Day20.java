@@ -1,19 +1,16 @@
 package year2019;
 
 import aoc.IAocTask;
+import year2019.utils.LongMinHeap;
 import year2019.utils.Pair;
 
 import java.util.*;
-import java.util.concurrent.LinkedBlockingDeque;
 
 public class Day20 implements IAocTask {
 
     String[][] maze;
-    int[][] shortestPathTo;
     int[] dx = {0, 1, 0, -1};
     int[] dy = {-1, 0, 1, 0};
-    int recursionDepthLimit = 50;
-    private boolean printEnabled = false;
 
     @SuppressWarnings("unused")
     MazePreview preview = new MazePreview();
@@ -37,24 +34,26 @@ public class Day20 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        maze = loadMaze(lines);
-        MazeMetadata metadata = getMazeMetadata(maze);
-
-        initializePortalNameToLocations(maze, metadata);
-
-        int pathLength = getShortestPath(maze, portalNameToLocations);
+        int pathLength = getShortestPath(lines, false);
         System.out.printf("Shortest path length: %d%n", pathLength);
     }
 
     @Override
     public void solvePartTwo(List<String> lines) {
+        int pathLength = getShortestPath(lines, true);
+        System.out.printf("Shortest recursive path length: %d%n", pathLength);
+    }
+
+    /**
+     * @param isRecursive true if the portals change the recursion level
+     */
+    int getShortestPath(List<String> lines, boolean isRecursive) {
         maze = loadMaze(lines);
         MazeMetadata metadata = getMazeMetadata(maze);
 
         initializePortalNameToLocations(maze, metadata);
 
-        int pathLength = getShortestRecursivePath(maze, portalNameToLocations);
-        System.out.printf("Shortest recursive path length: %d%n", pathLength);
+        return new PortalGraph().getShortestPath(isRecursive);
     }
 
     private MazeMetadata getMazeMetadata(String[][] maze) {
@@ -101,160 +100,12 @@ public class Day20 implements IAocTask {
         return true;
     }
 
-    private int getShortestPath(String[][] maze, HashMap<String, List<Pair<Integer>>> portalNameToLocations) {
-        Pair<Integer> aa = portalNameToLocations.get(START).get(0);
-        Pair<Integer> zz = portalNameToLocations.get(END).get(0);
-        Pair<Integer> current = new Pair<>(aa);
-
-        shortestPathTo = initializeShortestPathTo(maze);
-        shortestPathTo[aa.y][aa.x] = 0;
-
-        Queue<Pair<Integer>> queue = new LinkedBlockingDeque<>();
-        queue.add(current);
-
-        while (!queue.isEmpty()) {
-            Pair<Integer> node = queue.poll();
-            if (!maze[node.y][node.x].equals(".")) {
-                throw new RuntimeException(String.format("Not a path: %s", node));
-            }
-            List<Pair<Integer>> neighboursToVisit = getNeighboursAndPortalsToVisit(node, dx, dy);
-            queue.addAll(neighboursToVisit);
-        }
-        return shortestPathTo[zz.y][zz.x];
-    }
-
-    private int getShortestRecursivePath(String[][] maze, HashMap<String, List<Pair<Integer>>> portalNameToLocations) {
-        StackPair<Integer> aa = new StackPair<>(portalNameToLocations.get(START).get(0), 0);
-        StackPair<Integer> zz = new StackPair<>(portalNameToLocations.get(END).get(0), 0);
-        StackPair<Integer> current = new StackPair<>(aa, 0);
-
-        HashMap<Integer, int[][]> recursionLevelToPathLength = new HashMap<>();
-        recursionLevelToPathLength.put(aa.recursionDepth, initializeShortestPathTo(maze));
-        recursionLevelToPathLength.get(aa.recursionDepth)[aa.y][aa.x] = 0;
-
-        Stack<StackPair<Integer>> stack = new Stack<>();
-        stack.push(current);
-
-        while (!stack.isEmpty()) {
-            StackPair<Integer> node = stack.pop();
-            if (printEnabled) {
-                System.out.printf("pop %s, stack: %s%n", node, stack);
-                System.out.printf("recursion depth %d%n", node.recursionDepth);
-            }
-
-//            if (stack.size() > 500) {
-//                throw new StackOverflowError(String.format("limit exceeded %d at recursion depth %d", stack.size(), node.recursionDepth));
-//            }
-
-
-            if (!maze[node.y][node.x].equals(".")) {
-                throw new RuntimeException(String.format("Not a path: %s", node));
-            }
-
-            List<StackPair<Integer>> neighboursToVisit = getNeighboursAndPortalsToVisitOnRecursionLevel(node, dx, dy, recursionLevelToPathLength);
-            if (printEnabled) {
-                System.out.printf("adding: %s%n--------%n", neighboursToVisit);
-            }
-            stack.addAll(neighboursToVisit);
-        }
-        return recursionLevelToPathLength.get(0)[zz.y][zz.x];
-    }
-
-    private List<StackPair<Integer>> getNeighboursAndPortalsToVisitOnRecursionLevel(StackPair<Integer> node, int[] dx, int[] dy, HashMap<Integer, int[][]> recursionLevelToPathLength) {
-        ArrayList<StackPair<Integer>> neighbours = new ArrayList<>();
-        if (node.recursionDepth > recursionDepthLimit) return neighbours;
-
-        int[][] pathLengths = recursionLevelToPathLength.get(node.recursionDepth);
-
-        for (int i = 0; i < dx.length; i++) {
-            StackPair<Integer> neighbour = new StackPair<>(node, node.recursionDepth);
-            neighbour.x = node.x + dx[i];
-            neighbour.y = node.y + dy[i];
-            if (!maze[neighbour.y][neighbour.x].equals(".") || !isShorterPath(node, neighbour, pathLengths)) {
-                continue;
-            }
-
-            pathLengths[neighbour.y][neighbour.x] = pathLengths[node.y][node.x] + 1;
-
-            if (entrances.contains(neighbour)) {
-                if (!recursionLevelToPathLength.containsKey(neighbour.recursionDepth + 1)) {
-                    recursionLevelToPathLength.put(neighbour.recursionDepth + 1, initializeShortestPathTo(maze));
-                }
-                StackPair<Integer> enteredNode = new StackPair<>(getOtherPortalSide(neighbour), neighbour.recursionDepth + 1);
-
-                int[][] upperMapLayer = recursionLevelToPathLength.get(neighbour.recursionDepth);
-                int[][] lowerMapLayer = recursionLevelToPathLength.get(enteredNode.recursionDepth);
-
-                lowerMapLayer[enteredNode.y][enteredNode.x] = upperMapLayer[neighbour.y][neighbour.x] + 1;
-
-                if (printEnabled) {
-                    System.out.printf("moving from: %s -> %s", neighbour, enteredNode);
-                }
-                neighbour = enteredNode;
-            } else if (exits.contains(neighbour) && neighbour.recursionDepth > 0) {
-                StackPair<Integer> enteredNode = new StackPair<>(getOtherPortalSide(neighbour), neighbour.recursionDepth - 1);
-
-                int[][] lowerMapLayer = recursionLevelToPathLength.get(neighbour.recursionDepth);
-                int[][] upperMapLayer = recursionLevelToPathLength.get(enteredNode.recursionDepth);
-
-                upperMapLayer[enteredNode.y][enteredNode.x] = lowerMapLayer[neighbour.y][neighbour.x] + 1;
-
-                if (printEnabled) {
-                    System.out.printf("moving back to: %s <- %s", enteredNode, neighbour);
-                }
-                neighbour = enteredNode;
-            }
-            neighbours.add(neighbour);
-        }
-
-        return neighbours;
-    }
-
-    private List<Pair<Integer>> getNeighboursAndPortalsToVisit(Pair<Integer> node, int[] dx, int[] dy) {
-        ArrayList<Pair<Integer>> neighbours = new ArrayList<>();
-        for (int i = 0; i < dx.length; i++) {
-            Pair<Integer> neighbour = new Pair<>(node);
-            neighbour.x = node.x + dx[i];
-            neighbour.y = node.y + dy[i];
-            if (maze[neighbour.y][neighbour.x].equals(".") && isShorterPath(node, neighbour)) {
-                neighbours.add(neighbour);
-                shortestPathTo[neighbour.y][neighbour.x] = shortestPathTo[node.y][node.x] + 1;
-            } else if (maze[neighbour.y][neighbour.x].matches("[B-Y]")) {
-                Pair<Integer> otherPortalSide = getOtherPortalSide(node);
-                if (isShorterPath(node, otherPortalSide)) {
-                    neighbours.add(otherPortalSide);
-                    shortestPathTo[neighbour.y][neighbour.x] = shortestPathTo[node.y][node.x] + 1;
-                    shortestPathTo[otherPortalSide.y][otherPortalSide.x] = shortestPathTo[node.y][node.x] + 1;
-                }
-            }
-        }
-        return neighbours;
-    }
-
     private Pair<Integer> getOtherPortalSide(Pair<Integer> node) {
         String portalName = positionToPortalName.get(node);
         List<Pair<Integer>> locations = portalNameToLocations.get(portalName);
         return locations.get(0).equals(node) ? locations.get(1) : locations.get(0);
     }
 
-    private boolean isShorterPath(Pair<Integer> node, Pair<Integer> neighbour) {
-        return shortestPathTo[node.y][node.x] + 1 < shortestPathTo[neighbour.y][neighbour.x];
-    }
-
-    private boolean isShorterPath(Pair<Integer> node, Pair<Integer> neighbour, int[][] shortestPathTo) {
-        return shortestPathTo[node.y][node.x] + 1 < shortestPathTo[neighbour.y][neighbour.x];
-    }
-
-    private int[][] initializeShortestPathTo(String[][] maze) {
-        int[][] shortestPathTo = new int[maze.length][maze[0].length];
-        for (int[] row : shortestPathTo) {
-            for (int i = 0; i < shortestPathTo[0].length; i++) {
-                row[i] = Integer.MAX_VALUE;
-            }
-        }
-        return shortestPathTo;
-    }
-
     private String[][] loadMaze(List<String> lines) {
         normalize(lines);
         String[][] mazeWithLabels = new String[lines.size()][lines.get(2).length()];
@@ -403,17 +254,133 @@ public class Day20 implements IAocTask {
         }
     }
 
-    static class StackPair<T> extends Pair<T> {
-        int recursionDepth;
+    /**
+     * The AA, ZZ and portal tiles with the walking distances between them, found once by a BFS from every tile.
+     * The shortest path is Dijkstra over the (tile, recursion level) states, the distances of the levels are kept
+     * in a single array grown when the path goes deeper.
+     * <p>
+     * The levels are bounded by the portals: for every level d of the deepest point of a path take the portal the
+     * path last entered d through and the portal it first left d through afterwards. If two levels had the same pair,
+     * the part between the shallower pair could be replaced by the deeper one (the inner levels look the same),
+     * giving a shorter path. So a shortest path goes at most portals^2 levels deep and without a path the search
+     * ends there.
+     */
+    class PortalGraph {
+        private final List<Pair<Integer>> tiles = new ArrayList<>();
+        /**
+         * walking distance between the tiles (without the portals), -1 if not reachable
+         */
+        private final int[][] walkingDistances;
+        /**
+         * tile on the other side of the portal, -1 for the AA and ZZ
+         */
+        private final int[] otherSides;
+        /**
+         * +1 for the inner portals (one level deeper), -1 for the outer ones
+         */
+        private final int[] levelChanges;
+        private int[] distances;
+
+        PortalGraph() {
+            portalNameToLocations.values().forEach(tiles::addAll);
+            int tilesCount = tiles.size();
+            HashMap<Pair<Integer>, Integer> tileToIdx = new HashMap<>();
+            for (int idx = 0; idx < tilesCount; idx++) {
+                tileToIdx.put(tiles.get(idx), idx);
+            }
 
-        public StackPair(Pair<T> pair, int recursionDepth) {
-            super(pair);
-            this.recursionDepth = recursionDepth;
+            walkingDistances = new int[tilesCount][];
+            otherSides = new int[tilesCount];
+            levelChanges = new int[tilesCount];
+            for (int idx = 0; idx < tilesCount; idx++) {
+                Pair<Integer> tile = tiles.get(idx);
+                walkingDistances[idx] = findWalkingDistances(tile, tileToIdx);
+                String portalName = positionToPortalName.get(tile);
+                boolean isPortal = !portalName.equals(START) && !portalName.equals(END);
+                otherSides[idx] = isPortal ? tileToIdx.get(getOtherPortalSide(tile)) : -1;
+                levelChanges[idx] = entrances.contains(tile) ? 1 : -1;
+            }
         }
 
-        @Override
-        public String toString() {
-            return String.format("{%s, %s, D=%d}", x, y, recursionDepth);
+        private int[] findWalkingDistances(Pair<Integer> from, HashMap<Pair<Integer>, Integer> tileToIdx) {
+            int width = maze[0].length;
+            int[] cellDistances = new int[maze.length * width];
+            Arrays.fill(cellDistances, -1);
+            int[] queue = new int[cellDistances.length];
+            int head = 0;
+            int tail = 0;
+            cellDistances[from.y * width + from.x] = 0;
+            queue[tail++] = from.y * width + from.x;
+            while (head < tail) {
+                int cell = queue[head++];
+                for (int i = 0; i < dx.length; i++) {
+                    int x = cell % width + dx[i];
+                    int y = cell / width + dy[i];
+                    int next = y * width + x;
+                    if (maze[y][x].equals(".") && cellDistances[next] == -1) {
+                        cellDistances[next] = cellDistances[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+
+            int[] tileDistances = new int[tiles.size()];
+            tileToIdx.forEach((tile, idx) -> tileDistances[idx] = cellDistances[tile.y * width + tile.x]);
+            return tileDistances;
+        }
+
+        /**
+         * @param isRecursive true if the portals change the recursion level
+         */
+        int getShortestPath(boolean isRecursive) {
+            int tilesCount = tiles.size();
+            int portalsCount = (int) Arrays.stream(otherSides).filter(otherSide -> otherSide != -1).count() / 2;
+            int maxLevel = portalsCount * portalsCount;
+            int start = tiles.indexOf(portalNameToLocations.get(START).get(0));
+            int end = tiles.indexOf(portalNameToLocations.get(END).get(0));
+            distances = new int[tilesCount];
+            Arrays.fill(distances, Integer.MAX_VALUE);
+
+            LongMinHeap queue = new LongMinHeap();
+            distances[start] = 0;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                long entry = queue.poll();
+                int cost = (int) (entry >>> 32);
+                int state = (int) entry;
+                if (cost > distances[state]) {
+                    continue;
+                }
+                int tile = state % tilesCount;
+                int level = state / tilesCount;
+                if (tile == end && level == 0) {
+                    return cost;
+                }
+
+                for (int next = 0; next < tilesCount; next++) {
+                    if (walkingDistances[tile][next] > 0) {
+                        relax(next, level, cost + walkingDistances[tile][next], queue);
+                    }
+                }
+                int nextLevel = isRecursive ? level + levelChanges[tile] : 0;
+                if (otherSides[tile] != -1 && nextLevel >= 0 && nextLevel <= maxLevel) {
+                    relax(otherSides[tile], nextLevel, cost + 1, queue);
+                }
+            }
+            throw new RuntimeException(String.format("No path from %s to %s", START, END));
+        }
+
+        private void relax(int tile, int level, int cost, LongMinHeap queue) {
+            int state = level * tiles.size() + tile;
+            if (state >= distances.length) {
+                int previousLength = distances.length;
+                distances = Arrays.copyOf(distances, Math.max(2 * previousLength, state + 1));
+                Arrays.fill(distances, previousLength, distances.length, Integer.MAX_VALUE);
+            }
+            if (cost < distances[state]) {
+                distances[state] = cost;
+                queue.add((long) cost << 32 | state);
+            }
         }
     }
 }
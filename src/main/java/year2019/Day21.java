@@ -3,12 +3,14 @@ package year2019;
 import aoc.IAocTask;
 import year2019.utils.Aoc2019Utils;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
-import static year2019.Day21.SpringScriptBuilder.Register.*;
-
 public class Day21 implements IAocTask {
+    private static final int WALK_SENSORS_COUNT = 4;
+    private static final int RUN_SENSORS_COUNT = 9;
+    private static final int MAX_SCRIPT_LENGTH = 15;
 
     @Override
     public String getFileName() {
@@ -17,75 +19,58 @@ public class Day21 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        char[] springScript = loadWalkScript();
-        solve(lines, springScript);
-    }
-
-    private void solve(List<String> lines, char[] springScript) {
-        long[] program = Aoc2019Utils.loadProgram(lines);
-        program = Aoc2019Utils.copyToLargerMemory(program, 6000);
-        Day05 computer = new Day05();
-
-        int[] scriptIdx = {0};
-        long[] lastOutput = {0};
-        computer.setIoListeners(() -> springScript[scriptIdx[0]++],
-                (output, instructionPointer) -> {
-                    lastOutput[0] = output;
-                    System.out.printf("%c", (char) output);
-                    return false;
-                }, () -> System.out.printf("%n done, final output: %d%n", lastOutput[0]));
-
-        computer.runProgram(program, new long[2]);
+        solve(lines, WALK_SENSORS_COUNT, false);
     }
 
     @Override
     public void solvePartTwo(List<String> lines) {
-        char[] springScript = loadRunScript();
-        solve(lines, springScript);
+        solve(lines, RUN_SENSORS_COUNT, true);
     }
 
     /**
-     * max 15 instructions
-     * T, J are false at the begining
-     *
-     * @return the jump script
+     * Synthesizes a shortest script passing all the known hulls and confirms it on the droid. When the droid falls,
+     * the hull it failed on is added to the known ones and the search is repeated.
      */
-    private char[] loadWalkScript() {
-        return new SpringScriptBuilder()
-                .not(REG_A, REG_T)
-                .not(REG_C, REG_J)
-                .or(REG_J, REG_T)
-                .and(REG_D, REG_J)
-                .and(REG_T, REG_J)
-                // ---
-                .not(REG_A, REG_T)
-                .or(REG_T, REG_J)
-                // ---
-                .walk()
-                .build();
+    private void solve(List<String> lines, int sensorsCount, boolean isRunMode) {
+        IntCodeAscii springDroidProgram = new IntCodeAscii(new IntCodeComputer(Aoc2019Utils.loadProgram(lines)));
+        if (springDroidProgram.run() != IntCodeComputer.Status.AWAITING_INPUT) {
+            throw new RuntimeException("The springdroid does not ask for the script");
+        }
+        // every attempt continues from the prompt, the memory pages are shared until the droid writes to them
+        IntCodeComputer.Snapshot prompt = springDroidProgram.getComputer().snapshot();
+        SpringScriptSynthesizer synthesizer = new SpringScriptSynthesizer(sensorsCount);
+
+        while (true) {
+            SpringScriptBuilder scriptBuilder = synthesizer.synthesize(MAX_SCRIPT_LENGTH)
+                    .orElseThrow(() -> new RuntimeException(
+                            String.format("No script of at most %d instructions passes all the known hulls", MAX_SCRIPT_LENGTH)));
+            String springScript = new String((isRunMode ? scriptBuilder.run() : scriptBuilder.walk()).build());
+            System.out.print(springScript);
+
+            IntCodeAscii springDroid = new IntCodeAscii(prompt.fork());
+            springDroid.send(springScript);
+            springDroid.run();
+            if (springDroid.getLastNonAsciiOutput() != -1) {
+                System.out.printf("%n done, final output: %d%n", springDroid.getLastNonAsciiOutput());
+                return;
+            }
+
+            String hull = getFailedHull(springDroid.getOutput());
+            System.out.printf("fell into a hole: %s%n", hull);
+            if (!synthesizer.addHull(hull)) {
+                throw new RuntimeException(String.format("The droid failed again on the hull %s", hull));
+            }
+        }
     }
 
-    private char[] loadRunScript() {
-        return new SpringScriptBuilder()
-                .not(REG_T, REG_J)
-                .or(REG_J, REG_T) // T and J are true
-                .not(REG_A, REG_J)
-                //
-                .and(REG_A, REG_T)
-                .and(REG_D, REG_T)
-                .and(REG_H, REG_T)
-                //
-                .or(REG_T, REG_J)
-                //
-                .and(REG_A, REG_T)
-                .and(REG_B, REG_T)
-                .and(REG_C, REG_T)
-                .and(REG_D, REG_T)
-                .not(REG_T, REG_T)
-                //
-                .and(REG_T, REG_J)
-                .run()
-                .build();
+    /**
+     * @return the hull row of the first frame of the droid's fall animation
+     */
+    private String getFailedHull(String output) {
+        return Arrays.stream(output.split("\n"))
+                .filter(line -> line.matches("[#.]+") && line.contains("#"))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException(String.format("No hull in the droid output:%n%s", output)));
     }
 
     static class SpringScriptBuilder {
@@ -2,13 +2,18 @@ package year2019;
 
 import aoc.IAocTask;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class Day22 implements IAocTask {
-    private List<Integer> cards;
+    private static final long SMALL_DECK_SIZE = 10007;
+    private static final long TRACKED_CARD = 2019;
+    private static final long HUGE_DECK_SIZE = 119315717514047L;
+    private static final long HUGE_DECK_REPEATS = 101741582076661L;
+    private static final long CHECKED_POSITION = 2020;
+
     String SHF_STACK = "deal into new stack";
     String SHF_INC_DEAL = "deal with increment";
     String SHF_CUT = "cut";
@@ -20,60 +25,32 @@ public class Day22 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        List<CardShuffle> shuffles = getShuffles(lines);
-        cards = IntStream.range(0, 10007).boxed().collect(Collectors.toCollection(ArrayList::new));
-        shuffles.forEach(this::executeShuffle);
-        System.out.println(cards.indexOf(2019));
+        LinearShuffle shuffle = toLinearShuffle(getShuffles(lines), SMALL_DECK_SIZE);
+        System.out.println(shuffle.getPosition(TRACKED_CARD));
     }
 
     @Override
     public void solvePartTwo(List<String> lines) {
-        List<CardShuffle> shuffles = getShuffles(lines);
-        cards = IntStream.range(0, 10007).boxed().collect(Collectors.toCollection(ArrayList::new));
-        List<Integer> originalOrder = new ArrayList<>(cards);
-
-        shuffles.forEach(this::executeShuffle);
-        int iterations = 1;
-        while (!originalOrder.equals(cards)) {
-            List<Integer> prevShuffled = new ArrayList<>(cards);
-            //System.out.println(cards.get(2020));
-            shuffles.forEach(this::executeShuffle);
-            printPositionChanges(prevShuffled);
-            iterations++;
-        }
-
-        System.out.printf("cycle after: %d iterations%n", iterations);
-
-
-//        System.out.printf("card at 2020th position: %d%n", cards.get(2020));
-//
-        long newCardsCount = 119315717514047L;
-        long repeats = 101741582076661L;
-
-
-        /*
-        System.out.printf("Shuffles after cycle %d%n", newCardsCount % repeats);
-        long start = System.nanoTime();
-        System.out.println("start");
-         TAKES TOO LONG:
-        for (long i = 0; i < newCardsCount % repeats; i++) {
-        }
-        System.out.printf("done %.3f [s]%n", (System.nanoTime() - start) / 1e9);
-         */
+        LinearShuffle shuffle = toLinearShuffle(getShuffles(lines), HUGE_DECK_SIZE)
+                .repeat(HUGE_DECK_REPEATS);
+        System.out.printf("card at %dth position: %d%n", CHECKED_POSITION, shuffle.getCardAt(CHECKED_POSITION));
     }
 
-    private void printPositionChanges(List<Integer> prevShuffled) {
-        int prevIdx = prevShuffled.indexOf(cards.get(2020));
-        System.out.printf("Card %d on position 2020 was previously on %d position%n", cards.get(2020), prevIdx);
+    LinearShuffle toLinearShuffle(List<CardShuffle> shuffles, long cardsCount) {
+        LinearShuffle composed = LinearShuffle.identity(cardsCount);
+        for (CardShuffle shuffle : shuffles) {
+            composed = composed.then(toLinearShuffle(shuffle, cardsCount));
+        }
+        return composed;
     }
 
-    private void executeShuffle(CardShuffle shuffle) {
+    private LinearShuffle toLinearShuffle(CardShuffle shuffle, long cardsCount) {
         if (shuffle.name.equals(SHF_STACK)) {
-            cards = invertList(cards);
+            return new LinearShuffle(-1, -1, cardsCount);
         } else if (shuffle.name.equals(SHF_INC_DEAL)) {
-            cards = incDeal(cards, shuffle.value);
+            return new LinearShuffle(shuffle.value, 0, cardsCount);
         } else {
-            cards = cutCards(cards, shuffle.value);
+            return new LinearShuffle(1, -shuffle.value, cardsCount);
         }
     }
 
@@ -121,7 +98,7 @@ public class Day22 implements IAocTask {
     }
 
 
-    private List<CardShuffle> getShuffles(List<String> lines) {
+    List<CardShuffle> getShuffles(List<String> lines) {
         List<CardShuffle> shuffles;
         shuffles = lines.stream().map(this::mapToShuffle).collect(Collectors.toCollection(ArrayList::new));
         return shuffles;
@@ -146,4 +123,64 @@ public class Day22 implements IAocTask {
             this.value = value;
         }
     }
+
+    /**
+     * Shuffle as a linear function of the card position: position' = (a * position + b) mod cardsCount.
+     * The products are computed on BigIntegers, the deck sizes do not fit into 32 bits.
+     */
+    static class LinearShuffle {
+        final BigInteger a;
+        final BigInteger b;
+        final BigInteger cardsCount;
+
+        LinearShuffle(long a, long b, long cardsCount) {
+            this(BigInteger.valueOf(a), BigInteger.valueOf(b), BigInteger.valueOf(cardsCount));
+        }
+
+        private LinearShuffle(BigInteger a, BigInteger b, BigInteger cardsCount) {
+            this.a = a.mod(cardsCount);
+            this.b = b.mod(cardsCount);
+            this.cardsCount = cardsCount;
+        }
+
+        static LinearShuffle identity(long cardsCount) {
+            return new LinearShuffle(1, 0, cardsCount);
+        }
+
+        /**
+         * @return this shuffle followed by the next one
+         */
+        LinearShuffle then(LinearShuffle next) {
+            return new LinearShuffle(next.a.multiply(a), next.a.multiply(b).add(next.b), cardsCount);
+        }
+
+        /**
+         * Exponentiation by squaring
+         *
+         * @return the shuffle applied the given number of times
+         */
+        LinearShuffle repeat(long times) {
+            LinearShuffle result = identity(cardsCount.longValueExact());
+            LinearShuffle square = this;
+            while (times > 0) {
+                if ((times & 1) == 1) {
+                    result = result.then(square);
+                }
+                square = square.then(square);
+                times >>= 1;
+            }
+            return result;
+        }
+
+        long getPosition(long card) {
+            return a.multiply(BigInteger.valueOf(card)).add(b).mod(cardsCount).longValueExact();
+        }
+
+        /**
+         * Inverse of the {@link #getPosition(long)}, the cards count has to be a prime (the a has to be invertible)
+         */
+        long getCardAt(long position) {
+            return BigInteger.valueOf(position).subtract(b).multiply(a.modInverse(cardsCount)).mod(cardsCount).longValueExact();
+        }
+    }
 }
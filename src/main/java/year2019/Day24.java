@@ -1,18 +1,66 @@
 package year2019;
 
 import aoc.IAocTask;
-import year2019.utils.Pair;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
+/**
+ * Every level is a 25-bit int, the tile (x, y) is the bit y * 5 + x - for a single level the board is its
+ * own biodiversity rating. The neighbours of a tile are counted with the precomputed masks and popcounts.
+ */
 public class Day24 implements IAocTask {
-    static HashMap<Integer, Board> recursiveBoards = new HashMap<>();
-    static int targetIterations = 200;
-    static int RECURSIVE_BOARDS_DEPTH = targetIterations / 2 + 1;
-    private static final Pair<Integer> RECURSIVE_CELL_POSITION = new Pair<>(2, 2);
+    private static final int BOARD_SIZE = 5;
+    private static final int TILES_COUNT = BOARD_SIZE * BOARD_SIZE;
+    private static final int CENTER = TILES_COUNT / 2;
+    private static final int INITIAL_LEVELS_CAPACITY = 64;
+
+    /**
+     * neighbours of the tile on the same level (no recursion)
+     */
+    private static final int[] FLAT_NEIGHBOURS = new int[TILES_COUNT];
+    /**
+     * neighbours of the tile on the same level, without the center that holds the inner level
+     */
+    private static final int[] SAME_LEVEL_NEIGHBOURS = new int[TILES_COUNT];
+    /**
+     * neighbours of the border tile on the outer level (the tile next to its center)
+     */
+    private static final int[] OUTER_LEVEL_NEIGHBOURS = new int[TILES_COUNT];
+    /**
+     * neighbours of the tile next to the center on the inner level (the whole border row or column)
+     */
+    private static final int[] INNER_LEVEL_NEIGHBOURS = new int[TILES_COUNT];
+
+    static {
+        int[] dx = {0, 1, 0, -1};
+        int[] dy = {-1, 0, 1, 0};
+        for (int tile = 0; tile < TILES_COUNT; tile++) {
+            int x = tile % BOARD_SIZE;
+            int y = tile / BOARD_SIZE;
+            for (int k = 0; k < dx.length; k++) {
+                int neighbourX = x + dx[k];
+                int neighbourY = y + dy[k];
+                if (neighbourX < 0 || neighbourX >= BOARD_SIZE || neighbourY < 0 || neighbourY >= BOARD_SIZE) {
+                    OUTER_LEVEL_NEIGHBOURS[tile] |= 1 << (CENTER + dy[k] * BOARD_SIZE + dx[k]);
+                    continue;
+                }
+                int neighbour = neighbourY * BOARD_SIZE + neighbourX;
+                FLAT_NEIGHBOURS[tile] |= 1 << neighbour;
+                if (neighbour != CENTER) {
+                    SAME_LEVEL_NEIGHBOURS[tile] |= 1 << neighbour;
+                    continue;
+                }
+                for (int i = 0; i < BOARD_SIZE; i++) {
+                    int innerX = dx[k] == 0 ? i : (dx[k] > 0 ? 0 : BOARD_SIZE - 1);
+                    int innerY = dy[k] == 0 ? i : (dy[k] > 0 ? 0 : BOARD_SIZE - 1);
+                    INNER_LEVEL_NEIGHBOURS[tile] |= 1 << (innerY * BOARD_SIZE + innerX);
+                }
+            }
+        }
+    }
+
+    int targetIterations = 200;
 
     @Override
     public String getFileName() {
@@ -21,16 +69,13 @@ public class Day24 implements IAocTask {
 
     @Override
     public void solvePartOne(List<String> lines) {
-        String[][] input = loadBoard(lines);
-        Board board = new Board(input);
-
-        HashSet<Board> boards = new HashSet<>();
-        while (!boards.contains(board)) {
-            //System.out.println(board.getPrintout());
-            boards.add(board);
-            board = board.nextMinute();
+        int board = loadBoard(lines);
+        long[] seenBoards = new long[(1 << TILES_COUNT) / Long.SIZE];
+        while ((seenBoards[board >>> 6] & 1L << board) == 0) {
+            seenBoards[board >>> 6] |= 1L << board;
+            board = nextMinute(board, 0, 0, FLAT_NEIGHBOURS);
         }
-        System.out.println(board.hashCode());
+        System.out.println(board);
     }
 
     /**
@@ -40,337 +85,103 @@ public class Day24 implements IAocTask {
      */
     @Override
     public void solvePartTwo(List<String> lines) {
-        String[][] input = loadBoard(lines);
-
-        Board middleBoard = new Board(0, input);
-        recursiveBoards.put(middleBoard.recursionLevelId, middleBoard);
-
-        for (int i = 1; i <= RECURSIVE_BOARDS_DEPTH; i++) {
-            Board upperBoard = new Board(-i, Board.empty());
-            Board lowerBoard = new Board(i, Board.empty());
-            recursiveBoards.put(upperBoard.recursionLevelId, upperBoard);
-            recursiveBoards.put(lowerBoard.recursionLevelId, lowerBoard);
-        }
-
-//        printAllRecursiveBoards(0);
+        RecursiveLevels levels = new RecursiveLevels(loadBoard(lines));
         for (int i = 0; i < targetIterations; i++) {
-            Board board = recursiveBoards.get(0);
-            board.nextMinuteRecursively();
-//            printAllRecursiveBoards(i + 1);
-        }
-//        printAllRecursiveBoards(targetIterations);
-        System.out.println(countBugsOnAllRecursionLevels());
-    }
-
-    @SuppressWarnings("unused")
-    private void printAllRecursiveBoards(int iterations) {
-        System.out.printf("%n ---- after %d iterations: ----%n", iterations);
-        for (int i = -RECURSIVE_BOARDS_DEPTH; i <= RECURSIVE_BOARDS_DEPTH; i++) {
-            System.out.println(recursiveBoards.get(i));
+            levels.nextMinute();
         }
-        System.out.println("------------------------------");
+        System.out.println(levels.countBugs());
     }
 
-    private String[][] loadBoard(List<String> lines) {
-        String[][] board = new String[lines.size()][lines.get(0).length()];
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                board[i][j] = lines.get(i).substring(j, j + 1);
+    private int loadBoard(List<String> lines) {
+        int board = 0;
+        for (int y = 0; y < BOARD_SIZE; y++) {
+            for (int x = 0; x < BOARD_SIZE; x++) {
+                if (lines.get(y).charAt(x) == '#') {
+                    board |= 1 << (y * BOARD_SIZE + x);
+                }
             }
         }
         return board;
     }
 
-    private int countBugsOnAllRecursionLevels() {
-        return recursiveBoards
-                .values()
-                .stream()
-                .map(board -> board.compressed)
-                .map(board -> Arrays.stream(board).map(row -> Arrays.stream(row).sum()).reduce(Integer::sum).orElse(0))
-                .reduce(Integer::sum)
-                .orElse(0);
-    }
-
-    static class Board {
-        private int recursionLevelId;
-        static final int BOARD_SIZE = 5;
-        private static final int[] DX = {0, 1, 0, -1};
-        private static final int[] DY = {-1, 0, 1, 0};
-
-        int[][] compressed = new int[BOARD_SIZE][BOARD_SIZE];
-
-        public Board(String[][] board) {
-            compress(board);
-        }
-
-        Board(int recursionLevelId, String[][] board) {
-            this(board);
-            this.recursionLevelId = recursionLevelId;
-        }
-
-        Board(int recursionLevelId, int[][] compressed) {
-            this.recursionLevelId = recursionLevelId;
-            this.compressed = compressed;
-        }
-
-        private Board(int[][] copy) {
-            this.compressed = copy;
-        }
-
-        public static int[][] empty() {
-            return new int[BOARD_SIZE][BOARD_SIZE];
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Board)) return false;
-
-            Board board = (Board) o;
-
-            return board.hashCode() == o.hashCode();
-        }
-
-        @Override
-        public int hashCode() {
-            int hashCode = 0;
-            int multiplier = 1;
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                for (int j = 0; j < BOARD_SIZE ; j++) {
-                    hashCode += compressed[i][j] * multiplier;
-                    multiplier = multiplier * 2;
-                }
-            }
-            return hashCode;
-        }
-
-        @Override
-        public String toString() {
-            return getPrintout();
-        }
-
-        private void compress(String[][] board) {
-            for (int i = 0; i < board.length; i++) {
-                for (int j = 0; j < board[0].length; j++) {
-                    compressed[i][j] = board[i][j].equals(".") ? 0 : 1;
-                }
-            }
-        }
-
-        public Board nextMinute() {
-            int[][] copy = new int[BOARD_SIZE][BOARD_SIZE];
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                for (int j = 0; j < BOARD_SIZE; j++) {
-                    updateCell(copy, i, j);
-                }
-            }
-            return new Board(copy);
-        }
-
-        private boolean hasBug(int i, int j) {
-            return compressed[i][j] == 1;
-        }
-
-        private boolean hasBug2(int boardIdx, int i, int j) {
-            return recursiveBoards.get(boardIdx).compressed[i][j] == 1;
-        }
-
-        private boolean isEmpty(int i, int j) {
-            return compressed[i][j] == 0;
-        }
-
-        private boolean isEmpty2(int boardIdx, int i, int j) {
-            return recursiveBoards.get(boardIdx).compressed[i][j] == 0;
-        }
-
-        private boolean isEmptyBoard() {
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                for (int j = 0; j < BOARD_SIZE; j++) {
-                    if (compressed[i][j] == 1) return false;
-                }
-            }
-            return true;
-        }
-
-        private int countNeighbours(int i, int j) {
-            int counter = 0;
-            for (int k = 0; k < 4; k++) {
-                int neighbourI = i + DY[k];
-                int neighbourJ = j + DX[k];
-
-                if (isInRange(neighbourI, neighbourJ) && hasBug(neighbourI, neighbourJ)) {
-                    counter++;
-                }
-            }
-            return counter;
-        }
-
-        private int countNeighbours2(int boardIdx, int i, int j) {
-            int counter = 0;
-            for (int k = 0; k < 4; k++) {
-                int neighbourI = i + DY[k];
-                int neighbourJ = j + DX[k];
-
-                if (isRecursiveCell(neighbourI, neighbourJ)) {
-                    continue;
-                }
-
-                if (isInRange(neighbourI, neighbourJ) && hasBug2(boardIdx, neighbourI, neighbourJ)) {
-                    counter++;
-                }
-            }
-            return counter;
-        }
-
-        private int countLowerLayerNeighbours(int boardIdx, int i, int j) {
-            Board lower = recursiveBoards.get(boardIdx + 1);
-
-            int neighI, neighJ;
-            for (int k = 0; k < 4; k++) {
-                neighI = i + DY[k];
-                neighJ = j + DX[k];
-
-                /*
-                 *        2
-                 *  -|- - - - -|-
-                 *   |A B C D E|
-                 *   |F G H I J|
-                 * 1 |K L ? N O| 3
-                 *   |P Q R S T|
-                 *   |U V W X Y|
-                 *  -|- - - - -|-
-                 *        0
-                 *   0 1 2 ... - boardIdx     (this layer)
-                 *   A B C ... - boardIdx + 1 (lower layer)
-                 */
-                if (isRecursiveCell(neighI, neighJ)) {
-                    if (k == 2) {
-                        return Arrays.stream(lower.compressed[0]).sum();
-                    } else if (k == 0) {
-                        return Arrays.stream(lower.compressed[BOARD_SIZE - 1]).sum();
-                    } else if (k == 1) {
-                        return sumColumn(lower.compressed, 0);
-                    } else { // k == 3
-                        return sumColumn(lower.compressed, BOARD_SIZE - 1);
-                    }
-                }
-            }
-            return 0;
-        }
-
-        private boolean isRecursiveCell(int i, int j) {
-            return i == RECURSIVE_CELL_POSITION.y && j == RECURSIVE_CELL_POSITION.x;
-        }
-
-        private int countUpperLayerNeighbours(int boardIdx, int i, int j) {
-            Board upper = recursiveBoards.get(boardIdx - 1);
-            int neighboursCount = 0;
-
-            int neighI, neighJ;
-            for (int k = 0; k < 4; k++) {
-                neighI = i + DY[k];
-                neighJ = j + DX[k];
-
-                /*
-                 *        0
-                 *  -|- - - - -|-
-                 *   |A B C D E|
-                 *   |F G H I J|
-                 * 3 |K L ? N O| 1
-                 *   |P Q R S T|
-                 *   |U V W X Y|
-                 *  -|- - - - -|-
-                 *        2
-                 *   0 1 2 ... - boardIdx - 1 (upper layer)
-                 *   A B C ... - boardIdx     (this layer)
-                 */
-                if (isInRange(neighI, neighJ)) {
-                    continue;
-                }
-
-                neighboursCount += upper.compressed[RECURSIVE_CELL_POSITION.y + DY[k]][RECURSIVE_CELL_POSITION.x + DX[k]];
+    /**
+     * @param outer outer level (0 if none)
+     * @param inner inner level (0 if none)
+     */
+    private static int nextMinute(int level, int outer, int inner, int[] sameLevelNeighbours) {
+        int next = 0;
+        for (int tile = 0; tile < TILES_COUNT; tile++) {
+            int neighboursCount = Integer.bitCount(level & sameLevelNeighbours[tile])
+                    + Integer.bitCount(outer & OUTER_LEVEL_NEIGHBOURS[tile])
+                    + Integer.bitCount(inner & INNER_LEVEL_NEIGHBOURS[tile]);
+            boolean hasBug = (level >> tile & 1) == 1;
+            if (neighboursCount == 1 || (!hasBug && neighboursCount == 2)) {
+                next |= 1 << tile;
             }
-            return neighboursCount;
         }
+        return next;
+    }
 
-        private int sumColumn(int[][] compressed, int columnIdx) {
-            int sum = 0;
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                sum += compressed[i][columnIdx];
+    /**
+     * Levels kept in a dense array around the level 0, the array grows only when the bugs spread outward or inward.
+     * Level l + 1 is inside the center of the level l.
+     */
+    static class RecursiveLevels {
+        private int[] levels = new int[INITIAL_LEVELS_CAPACITY];
+        private int[] nextLevels = new int[INITIAL_LEVELS_CAPACITY];
+        private int offset = INITIAL_LEVELS_CAPACITY / 2;
+        private int minLevel = 0;
+        private int maxLevel = 0;
+
+        RecursiveLevels(int initialLevel) {
+            levels[offset] = initialLevel & ~(1 << CENTER);
+        }
+
+        void nextMinute() {
+            int from = minLevel - 1;
+            int to = maxLevel + 1;
+            if (offset + from - 1 < 0 || offset + to + 1 >= levels.length) {
+                grow();
             }
-            return sum;
-        }
 
-        private boolean isInRange(int i, int j) {
-            return i >= 0 && i < BOARD_SIZE && j >= 0 && j < BOARD_SIZE;
-        }
-
-        String getPrintout() {
-            StringBuilder boardBuilder = new StringBuilder();
-            boardBuilder.append(String.format("board: %d\n", recursionLevelId));
-
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                for (int j = 0; j < BOARD_SIZE; j++) {
-                    boardBuilder.append(compressed[i][j] == 1 ? "#" : ".");
+            int newMinLevel = Integer.MAX_VALUE;
+            int newMaxLevel = Integer.MIN_VALUE;
+            for (int level = from; level <= to; level++) {
+                int idx = offset + level;
+                int next = Day24.nextMinute(levels[idx], levels[idx - 1], levels[idx + 1], SAME_LEVEL_NEIGHBOURS) & ~(1 << CENTER);
+                nextLevels[idx] = next;
+                if (next != 0) {
+                    newMinLevel = Math.min(newMinLevel, level);
+                    newMaxLevel = Math.max(newMaxLevel, level);
                 }
-                boardBuilder.append("\n");
             }
 
-            return boardBuilder.toString();
-        }
-
-        public void nextMinuteRecursively() {
-            if (recursionLevelId != 0) throw new RuntimeException("Can be called only from the initial board");
-            HashMap<Integer, Board> nextMinuteBoards = new HashMap<>();
-            nextMinuteBoards.put(-RECURSIVE_BOARDS_DEPTH, recursiveBoards.get(-RECURSIVE_BOARDS_DEPTH));
-            nextMinuteBoards.put(RECURSIVE_BOARDS_DEPTH, recursiveBoards.get(RECURSIVE_BOARDS_DEPTH));
-
-            for (int boardId = -RECURSIVE_BOARDS_DEPTH + 1; boardId <= RECURSIVE_BOARDS_DEPTH - 1; boardId++) {
-                Board prevUpper = recursiveBoards.get(boardId - 1);
-                Board prev = recursiveBoards.get(boardId);
-                Board prevLower = recursiveBoards.get(boardId + 1);
-
-                Board newBoard = new Board(prev.recursionLevelId, Board.empty());
-                nextMinuteBoards.put(newBoard.recursionLevelId, newBoard);
-
-                if (prevUpper.isEmptyBoard() && prev.isEmptyBoard() && prevLower.isEmptyBoard()) {
-                    continue;
-                }
-
-                for (int i = 0; i < BOARD_SIZE; i++) {
-                    for (int j = 0; j < BOARD_SIZE; j++) {
-                        if (isRecursiveCell(i, j)) {
-                            newBoard.compressed[i][j] = 0;
-                        } else {
-                            newBoard.compressed[i][j] = getNewCellValue(newBoard.recursionLevelId, i, j);
-                        }
-                    }
-                }
+            int[] swapped = levels;
+            levels = nextLevels;
+            nextLevels = swapped;
+            if (newMinLevel == Integer.MAX_VALUE) {
+                newMinLevel = newMaxLevel = 0;
             }
-
-            recursiveBoards = nextMinuteBoards;
+            Arrays.fill(nextLevels, offset + from, offset + to + 1, 0);
+            minLevel = newMinLevel;
+            maxLevel = newMaxLevel;
         }
 
-        private int getNewCellValue(int boardIdx, int i, int j) {
-            int neighboursCount = countNeighbours2(boardIdx, i, j) + countLowerLayerNeighbours(boardIdx, i, j) + countUpperLayerNeighbours(boardIdx, i, j);
-            if (hasBug2(boardIdx, i, j) && neighboursCount != 1) {
-                return  0;
-            } else if (isEmpty2(boardIdx, i, j) && (neighboursCount == 1 || neighboursCount == 2)) {
-                return  1;
-            } else {
-                return recursiveBoards.get(boardIdx).compressed[i][j];
-            }
+        private void grow() {
+            int[] grown = new int[2 * levels.length];
+            int grownOffset = offset + levels.length / 2;
+            System.arraycopy(levels, 0, grown, levels.length / 2, levels.length);
+            levels = grown;
+            nextLevels = new int[grown.length];
+            offset = grownOffset;
         }
 
-        private void updateCell(int[][] copy, int i, int j) {
-            int neighboursCount = countNeighbours(i, j);
-            if (hasBug(i, j) && neighboursCount != 1) {
-                copy[i][j] = 0;
-            } else if (isEmpty(i, j) && (neighboursCount == 1 || neighboursCount == 2)) {
-                copy[i][j] = 1;
-            } else {
-                copy[i][j] = compressed[i][j];
+        int countBugs() {
+            int bugsCount = 0;
+            for (int level = minLevel; level <= maxLevel; level++) {
+                bugsCount += Integer.bitCount(levels[offset + level]);
             }
+            return bugsCount;
         }
     }
 }
@@ -0,0 +1,67 @@
+package year2019;
+
+/**
+ * ASCII layer over the {@link IntCodeComputer} - whole strings are queued as the computer input at once and the
+ * output is collected into a single growable buffer.
+ * Values outside the ASCII range (the puzzle answers) are kept aside, see {@link #getLastNonAsciiOutput()}.
+ */
+public class IntCodeAscii {
+    private static final int MAX_ASCII = 127;
+
+    private final IntCodeComputer computer;
+    private final StringBuilder output = new StringBuilder();
+    private long lastNonAsciiOutput = -1;
+
+    public IntCodeAscii(IntCodeComputer computer) {
+        this.computer = computer;
+    }
+
+    public IntCodeAscii send(CharSequence text) {
+        computer.addInputs(text);
+        return this;
+    }
+
+    public IntCodeAscii sendLine(CharSequence line) {
+        send(line);
+        computer.addInput('\n');
+        return this;
+    }
+
+    /**
+     * Runs the computer until it halts or waits for an input that was not sent yet
+     */
+    public IntCodeComputer.Status run() {
+        IntCodeComputer.Status status;
+        while ((status = computer.run()) == IntCodeComputer.Status.OUTPUT) {
+            long value = computer.getOutput();
+            if (value < 0 || value > MAX_ASCII) {
+                lastNonAsciiOutput = value;
+                continue;
+            }
+            output.append((char) value);
+        }
+        return status;
+    }
+
+    /**
+     * @return the whole ASCII output since the last {@link #clearOutput()}
+     */
+    public String getOutput() {
+        return output.toString();
+    }
+
+    public void clearOutput() {
+        output.setLength(0);
+    }
+
+    /**
+     * @return last value outside the ASCII range or -1 if there was none
+     */
+    public long getLastNonAsciiOutput() {
+        return lastNonAsciiOutput;
+    }
+
+    public IntCodeComputer getComputer() {
+        return computer;
+    }
+}
@@ -0,0 +1,405 @@
+package year2019;
+
+import java.util.Arrays;
+
+import static year2019.utils.Aoc2019Utils.*;
+
+/**
+ * IntCode computer with paged copy-on-write memory.
+ * <p>
+ * {@link #snapshot()} and {@link #fork()} share all memory pages with the original computer - a page is copied
+ * only when one of the branches writes to it, so exploring many branches of the same run (maze moves,
+ * script candidates) costs the modified pages instead of the whole program copy.
+ */
+public class IntCodeComputer {
+    private final Memory memory;
+    private int instructionPointer;
+    private long relativeBase;
+    private boolean halted;
+
+    private long[] inputQueue = new long[16];
+    private int inputHead = 0;
+    private int inputTail = 0;
+    private long output;
+
+    private Day05.InputListener inputListener;
+    private Day05.OutputListener outputListener;
+    private Day05.StopListener stopListener;
+    private IntCodeTrace.Recorder traceRecorder;
+
+    public IntCodeComputer(long[] program) {
+        this(new Memory(program), 0, 0, false);
+    }
+
+    /**
+     * @return computer resumed at the given state (e.g. restored from a trace checkpoint)
+     */
+    static IntCodeComputer restore(long[] memory, int instructionPointer, long relativeBase) {
+        return new IntCodeComputer(new Memory(memory), instructionPointer, relativeBase, false);
+    }
+
+    private IntCodeComputer(Memory memory, int instructionPointer, long relativeBase, boolean halted) {
+        this.memory = memory;
+        this.instructionPointer = instructionPointer;
+        this.relativeBase = relativeBase;
+        this.halted = halted;
+    }
+
+    /**
+     * Optional listeners - when the input listener is not set the computer pauses with
+     * {@link Status#AWAITING_INPUT} once the queued inputs are consumed, when the output listener is not set
+     * the computer pauses with {@link Status#OUTPUT} on every output
+     */
+    void setIoListeners(Day05.InputListener inputListener, Day05.OutputListener outputListener, Day05.StopListener stopListener) {
+        this.inputListener = inputListener;
+        this.outputListener = outputListener;
+        this.stopListener = stopListener;
+    }
+
+    /**
+     * @param traceRecorder records every executed instruction, input and output (null disables the tracing)
+     */
+    public void setTraceRecorder(IntCodeTrace.Recorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * @return frozen state of the computer, the memory pages are shared until either side writes to them
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(memory.fork(), instructionPointer, relativeBase, halted);
+    }
+
+    /**
+     * @return independent computer in the same state (including the queued inputs), without the listeners
+     */
+    public IntCodeComputer fork() {
+        IntCodeComputer forked = new IntCodeComputer(memory.fork(), instructionPointer, relativeBase, halted);
+        forked.inputQueue = Arrays.copyOf(inputQueue, inputQueue.length);
+        forked.inputHead = inputHead;
+        forked.inputTail = inputTail;
+        forked.output = output;
+        return forked;
+    }
+
+    public void addInput(long value) {
+        ensureInputCapacity(1);
+        inputQueue[inputTail++] = value;
+    }
+
+    /**
+     * Queues the first {@code count} values of the buffer
+     */
+    public void addInputs(long[] values, int count) {
+        ensureInputCapacity(count);
+        System.arraycopy(values, 0, inputQueue, inputTail, count);
+        inputTail += count;
+    }
+
+    /**
+     * Queues the characters of the text, one input per character
+     */
+    public void addInputs(CharSequence text) {
+        int count = text.length();
+        ensureInputCapacity(count);
+        for (int i = 0; i < count; i++) {
+            inputQueue[inputTail++] = text.charAt(i);
+        }
+    }
+
+    private void ensureInputCapacity(int count) {
+        if (inputTail + count <= inputQueue.length) {
+            return;
+        }
+        int queued = inputTail - inputHead;
+        long[] queue = queued + count <= inputQueue.length
+                ? inputQueue
+                : new long[Math.max(2 * inputQueue.length, queued + count)];
+        System.arraycopy(inputQueue, inputHead, queue, 0, queued);
+        inputQueue = queue;
+        inputHead = 0;
+        inputTail = queued;
+    }
+
+    public long getOutput() {
+        return output;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public int getInstructionPointer() {
+        return instructionPointer;
+    }
+
+    public long getRelativeBase() {
+        return relativeBase;
+    }
+
+    public long read(long address) {
+        return memory.read(address);
+    }
+
+    public void write(long address, long value) {
+        memory.write(address, value);
+    }
+
+    Memory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Runs the program until it halts, produces an output or waits for an input
+     */
+    public Status run() {
+        while (!halted) {
+            Status status = step();
+            if (status != null) {
+                return status;
+            }
+        }
+        return Status.HALTED;
+    }
+
+    /**
+     * Executes a single instruction
+     *
+     * @return null if the program can be continued, the pause reason otherwise
+     */
+    Status step() {
+        long code = memory.read(instructionPointer);
+        int opCode = (int) (code % 100);
+        int mode1 = (int) (code / 100 % 10);
+        int mode2 = (int) (code / 1000 % 10);
+        int mode3 = (int) (code / 10000 % 10);
+
+        if (traceRecorder != null) {
+            if (opCode == INSTR_INPUT && inputHead == inputTail && inputListener == null) {
+                return Status.AWAITING_INPUT;
+            }
+            traceRecorder.onStep(memory, instructionPointer, relativeBase);
+        }
+
+        switch (opCode) {
+            case INSTR_ADD:
+                memory.write(getAddress(mode3, 3), getParameter(mode1, 1) + getParameter(mode2, 2));
+                instructionPointer += 4;
+                return null;
+            case INSTR_MUL:
+                memory.write(getAddress(mode3, 3), getParameter(mode1, 1) * getParameter(mode2, 2));
+                instructionPointer += 4;
+                return null;
+            case INSTR_INPUT:
+                long input;
+                if (inputHead < inputTail) {
+                    input = inputQueue[inputHead++];
+                } else if (inputListener != null) {
+                    input = inputListener.onNext();
+                } else {
+                    return Status.AWAITING_INPUT;
+                }
+                if (traceRecorder != null) {
+                    traceRecorder.onInput(input);
+                }
+                memory.write(getAddress(mode1, 1), input);
+                instructionPointer += 2;
+                return null;
+            case INSTR_OUTPUT:
+                output = getParameter(mode1, 1);
+                if (traceRecorder != null) {
+                    traceRecorder.onOutput(output);
+                }
+                instructionPointer += 2;
+                if (outputListener == null || outputListener.getNextAndCheckIfShouldPause(output, instructionPointer)) {
+                    return Status.OUTPUT;
+                }
+                return null;
+            case INSTR_JMP_TRUE:
+                instructionPointer = getParameter(mode1, 1) != 0 ? (int) getParameter(mode2, 2) : instructionPointer + 3;
+                return null;
+            case INSTR_JMP_FALSE:
+                instructionPointer = getParameter(mode1, 1) == 0 ? (int) getParameter(mode2, 2) : instructionPointer + 3;
+                return null;
+            case INSTR_LT:
+                memory.write(getAddress(mode3, 3), getParameter(mode1, 1) < getParameter(mode2, 2) ? 1 : 0);
+                instructionPointer += 4;
+                return null;
+            case INSTR_EQ:
+                memory.write(getAddress(mode3, 3), getParameter(mode1, 1) == getParameter(mode2, 2) ? 1 : 0);
+                instructionPointer += 4;
+                return null;
+            case INSTR_RBASE:
+                relativeBase += getParameter(mode1, 1);
+                instructionPointer += 2;
+                return null;
+            case INSTR_STOP:
+                halted = true;
+                if (stopListener != null) {
+                    stopListener.onStop();
+                }
+                return Status.HALTED;
+            default:
+                throw new RuntimeException(String.format("No valid instruction found: code[%d]=%d", instructionPointer, code));
+        }
+    }
+
+    private long getParameter(int mode, int offset) {
+        long parameter = memory.read(instructionPointer + offset);
+        switch (mode) {
+            case MODE_POSITION:
+                return memory.read(parameter);
+            case MODE_IMMEDIATE:
+                return parameter;
+            case MODE_RELATIVE:
+                return memory.read(parameter + relativeBase);
+            default:
+                throw new RuntimeException(String.format("Unknown parameter mode: %d", mode));
+        }
+    }
+
+    private long getAddress(int mode, int offset) {
+        long parameter = memory.read(instructionPointer + offset);
+        switch (mode) {
+            case MODE_POSITION:
+                return parameter;
+            case MODE_RELATIVE:
+                return parameter + relativeBase;
+            default:
+                throw new RuntimeException(String.format("Unsupported mode: %d for the written parameter", mode));
+        }
+    }
+
+    public enum Status {
+        HALTED, OUTPUT, AWAITING_INPUT
+    }
+
+    /**
+     * Frozen computer state, any number of computers can be forked from it
+     */
+    public static class Snapshot {
+        private final Memory memory;
+        private final int instructionPointer;
+        private final long relativeBase;
+        private final boolean halted;
+
+        private Snapshot(Memory memory, int instructionPointer, long relativeBase, boolean halted) {
+            this.memory = memory;
+            this.instructionPointer = instructionPointer;
+            this.relativeBase = relativeBase;
+            this.halted = halted;
+        }
+
+        public IntCodeComputer fork() {
+            return new IntCodeComputer(memory.fork(), instructionPointer, relativeBase, halted);
+        }
+
+        public int getInstructionPointer() {
+            return instructionPointer;
+        }
+    }
+
+    /**
+     * Paged memory, unbounded (reading an untouched address gives 0). Pages shared with a fork are copied on
+     * the first write.
+     */
+    static class Memory {
+        static final int PAGE_BITS = 8;
+        static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        private long[][] pages;
+        private boolean[] shared;
+
+        Memory(long[] program) {
+            int pagesCount = (program.length + PAGE_SIZE - 1) >> PAGE_BITS;
+            pages = new long[pagesCount][];
+            shared = new boolean[pagesCount];
+            for (int page = 0; page < pagesCount; page++) {
+                pages[page] = new long[PAGE_SIZE];
+                int from = page << PAGE_BITS;
+                System.arraycopy(program, from, pages[page], 0, Math.min(PAGE_SIZE, program.length - from));
+            }
+        }
+
+        private Memory(long[][] pages, boolean[] shared) {
+            this.pages = pages;
+            this.shared = shared;
+        }
+
+        long read(long address) {
+            long page = address >>> PAGE_BITS;
+            if (page >= pages.length) {
+                if (address < 0) {
+                    throw new RuntimeException(String.format("Negative address: %d", address));
+                }
+                return 0;
+            }
+            long[] values = pages[(int) page];
+            return values == null ? 0 : values[(int) (address & PAGE_MASK)];
+        }
+
+        void write(long address, long value) {
+            if (address < 0) {
+                throw new RuntimeException(String.format("Negative address: %d", address));
+            }
+            int page = (int) (address >>> PAGE_BITS);
+            if (page >= pages.length) {
+                int pagesCount = Math.max(page + 1, 2 * pages.length);
+                pages = Arrays.copyOf(pages, pagesCount);
+                shared = Arrays.copyOf(shared, pagesCount);
+            }
+            long[] values = pages[page];
+            if (values == null) {
+                values = new long[PAGE_SIZE];
+                pages[page] = values;
+            } else if (shared[page]) {
+                values = values.clone();
+                pages[page] = values;
+                shared[page] = false;
+            }
+            values[(int) (address & PAGE_MASK)] = value;
+        }
+
+        /**
+         * Both this memory and the fork see all present pages as shared, whichever writes first gets a copy
+         */
+        Memory fork() {
+            for (int page = 0; page < pages.length; page++) {
+                shared[page] = pages[page] != null;
+            }
+            return new Memory(pages.clone(), shared.clone());
+        }
+
+        /**
+         * @return number of pages owned exclusively by this memory
+         */
+        int getPrivatePagesCount() {
+            int count = 0;
+            for (int page = 0; page < pages.length; page++) {
+                if (pages[page] != null && !shared[page]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return number of addresses backed by the page table
+         */
+        int size() {
+            return pages.length << PAGE_BITS;
+        }
+
+        long[] toArray(int length) {
+            long[] values = new long[length];
+            for (int page = 0; page < pages.length && page << PAGE_BITS < length; page++) {
+                if (pages[page] != null) {
+                    int from = page << PAGE_BITS;
+                    System.arraycopy(pages[page], 0, values, from, Math.min(PAGE_SIZE, length - from));
+                }
+            }
+            return values;
+        }
+    }
+}
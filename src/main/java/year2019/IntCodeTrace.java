@@ -0,0 +1,485 @@
+package year2019;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Binary trace of an IntCode run (see {@link IntCodeComputer#setTraceRecorder(Recorder)}).
+ * <p>
+ * The trace is a memory-mapped file: a header followed by records. Inputs and outputs are stored as
+ * (step delta, value) varints, every {@code checkpointInterval} steps the whole memory is stored together
+ * with the instruction pointer and the relative base, so the replay can jump to any step by executing
+ * at most {@code checkpointInterval} instructions. Both sides map the file in chunks, so the trace is not limited
+ * to a single mapped buffer (2 GB).
+ */
+public class IntCodeTrace {
+    private static final int MAGIC = 0x49435452; // "ICTR"
+    private static final int VERSION = 1;
+    private static final int MAP_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private static final byte REC_INPUT = 1;
+    private static final byte REC_OUTPUT = 2;
+    private static final byte REC_CHECKPOINT = 3;
+    private static final byte REC_END = 4;
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10_000;
+
+    public static Recorder record(Path path) {
+        return new Recorder(path, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public static Recorder record(Path path, int checkpointInterval) {
+        return new Recorder(path, checkpointInterval);
+    }
+
+    public static Replay replay(Path path) {
+        return new Replay(path);
+    }
+
+    /**
+     * Writes the trace, fed by the IntCode computer on every executed instruction, input and output
+     */
+    public static class Recorder implements AutoCloseable {
+        private final FileChannel channel;
+        private final int checkpointInterval;
+        private MappedByteBuffer buffer;
+        private long mappedOffset;
+
+        private long steps = 0;
+        private long lastRecordStep = 0;
+        private int inputsCount = 0;
+        private boolean closed = false;
+
+        private Recorder(Path path, int checkpointInterval) {
+            if (checkpointInterval <= 0) {
+                throw new RuntimeException(String.format("Invalid checkpoint interval: %d", checkpointInterval));
+            }
+            this.checkpointInterval = checkpointInterval;
+            try {
+                channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+                mappedOffset = 0;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_CHUNK_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not create the trace file %s", path), e);
+            }
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(checkpointInterval);
+        }
+
+        /**
+         * Called before the instruction at the instruction pointer is executed
+         */
+        void onStep(IntCodeComputer.Memory memory, int instructionPointer, long relativeBase) {
+            if (steps % checkpointInterval == 0) {
+                putCheckpoint(memory.toArray(memory.size()), instructionPointer, relativeBase);
+            }
+            steps++;
+        }
+
+        void onInput(long value) {
+            inputsCount++;
+            putValue(REC_INPUT, value);
+        }
+
+        void onOutput(long value) {
+            putValue(REC_OUTPUT, value);
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        private void putCheckpoint(long[] memory, int instructionPointer, long relativeBase) {
+            ensureCapacity(1 + 5 * MAX_VARINT_SIZE + memory.length * Long.BYTES);
+            buffer.put(REC_CHECKPOINT);
+            putStepDelta(steps);
+            putVarLong(instructionPointer);
+            putVarLong(zigZag(relativeBase));
+            putVarLong(inputsCount);
+            putVarLong(memory.length);
+            for (long value : memory) {
+                buffer.putLong(value);
+            }
+        }
+
+        private void putValue(byte recordType, long value) {
+            ensureCapacity(1 + 2 * MAX_VARINT_SIZE);
+            buffer.put(recordType);
+            putStepDelta(steps - 1);
+            putVarLong(zigZag(value));
+        }
+
+        private void putStepDelta(long step) {
+            putVarLong(step - lastRecordStep);
+            lastRecordStep = step;
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            mappedOffset += buffer.position();
+            try {
+                buffer.force();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, mappedOffset, Math.max(MAP_CHUNK_SIZE, bytes));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not extend the trace file", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ensureCapacity(1 + MAX_VARINT_SIZE);
+            buffer.put(REC_END);
+            putStepDelta(steps);
+            try {
+                buffer.force();
+                channel.truncate(mappedOffset + buffer.position());
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not close the trace file", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the trace once, indexes the inputs, outputs and checkpoints and restores the computer state
+     * at any step
+     */
+    public static class Replay implements AutoCloseable {
+        private final FileChannel channel;
+        private final MappedReader reader;
+        private final int checkpointInterval;
+
+        private long[] inputSteps = new long[16];
+        private long[] inputs = new long[16];
+        private int inputsCount = 0;
+        private long[] outputSteps = new long[16];
+        private long[] outputs = new long[16];
+        private int outputsCount = 0;
+        private long[] checkpointSteps = new long[16];
+        private long[] checkpointPositions = new long[16];
+        private int checkpointsCount = 0;
+        private long stepsCount = -1;
+
+        private Replay(Path path) {
+            try {
+                channel = FileChannel.open(path, READ);
+                reader = new MappedReader(channel);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not open the trace file %s", path), e);
+            }
+            if (reader.getInt() != MAGIC) {
+                close();
+                throw new RuntimeException(String.format("%s is not an IntCode trace", path));
+            }
+            int version = reader.getInt();
+            if (version != VERSION) {
+                close();
+                throw new RuntimeException(String.format("Unsupported trace version: %d", version));
+            }
+            checkpointInterval = reader.getInt();
+            indexRecords();
+        }
+
+        private void indexRecords() {
+            long step = 0;
+            while (stepsCount == -1) {
+                if (!reader.hasRemaining()) {
+                    throw new RuntimeException("Truncated trace - the recorder was not closed");
+                }
+                long recordPosition = reader.position();
+                byte recordType = reader.get();
+                step += reader.readVarLong();
+                switch (recordType) {
+                    case REC_INPUT:
+                        if (inputsCount == inputs.length) {
+                            inputs = Arrays.copyOf(inputs, 2 * inputsCount);
+                            inputSteps = Arrays.copyOf(inputSteps, 2 * inputsCount);
+                        }
+                        inputSteps[inputsCount] = step;
+                        inputs[inputsCount++] = unZigZag(reader.readVarLong());
+                        break;
+                    case REC_OUTPUT:
+                        if (outputsCount == outputs.length) {
+                            outputs = Arrays.copyOf(outputs, 2 * outputsCount);
+                            outputSteps = Arrays.copyOf(outputSteps, 2 * outputsCount);
+                        }
+                        outputSteps[outputsCount] = step;
+                        outputs[outputsCount++] = unZigZag(reader.readVarLong());
+                        break;
+                    case REC_CHECKPOINT:
+                        if (checkpointsCount == checkpointSteps.length) {
+                            checkpointSteps = Arrays.copyOf(checkpointSteps, 2 * checkpointsCount);
+                            checkpointPositions = Arrays.copyOf(checkpointPositions, 2 * checkpointsCount);
+                        }
+                        checkpointSteps[checkpointsCount] = step;
+                        checkpointPositions[checkpointsCount++] = recordPosition;
+                        reader.readVarLong(); // instruction pointer
+                        reader.readVarLong(); // relative base
+                        reader.readVarLong(); // inputs consumed
+                        long memoryLength = reader.readVarLong();
+                        reader.skip(memoryLength * Long.BYTES);
+                        break;
+                    case REC_END:
+                        stepsCount = step;
+                        break;
+                    default:
+                        throw new RuntimeException(String.format("Unknown trace record %d at %d", recordType, recordPosition));
+                }
+            }
+        }
+
+        public long getStepsCount() {
+            return stepsCount;
+        }
+
+        public int getCheckpointInterval() {
+            return checkpointInterval;
+        }
+
+        public long[] getInputs() {
+            return Arrays.copyOf(inputs, inputsCount);
+        }
+
+        public long[] getOutputs() {
+            return Arrays.copyOf(outputs, outputsCount);
+        }
+
+        /**
+         * @param step number of executed instructions
+         * @return outputs produced by the first {@code step} instructions
+         */
+        public long[] getOutputsUntil(long step) {
+            return Arrays.copyOf(outputs, countBefore(outputSteps, outputsCount, step));
+        }
+
+        /**
+         * Restores the state from the closest preceding checkpoint and executes the remaining instructions
+         * with the recorded inputs
+         *
+         * @param step number of executed instructions
+         * @return the computer state after {@code step} instructions
+         */
+        public State seek(long step) {
+            if (step < 0 || step > stepsCount) {
+                throw new RuntimeException(String.format("Step %d out of the trace range [0, %d]", step, stepsCount));
+            }
+            int checkpointIdx = countBefore(checkpointSteps, checkpointsCount, step + 1) - 1;
+            State state = readCheckpoint(checkpointIdx);
+
+            long stepsToRun = step - state.step;
+            if (stepsToRun == 0) {
+                return state;
+            }
+
+            IntCodeComputer computer = IntCodeComputer.restore(state.memory, state.instructionPointer, state.relativeBase);
+            computer.setIoListeners(() -> inputs[state.inputsConsumed++], (output, instructionPointer) -> false, null);
+            for (long executed = 0; executed < stepsToRun; executed++) {
+                computer.step();
+            }
+            state.step = step;
+            state.instructionPointer = computer.getInstructionPointer();
+            state.relativeBase = computer.getRelativeBase();
+            state.memory = toArray(computer.getMemory(), state.memory.length);
+            return state;
+        }
+
+        /**
+         * @return the memory, at least {@code minLength} long, extended only up to the last non-zero address
+         */
+        private static long[] toArray(IntCodeComputer.Memory memory, int minLength) {
+            long[] values = memory.toArray(Math.max(minLength, memory.size()));
+            int length = values.length;
+            while (length > minLength && values[length - 1] == 0) {
+                length--;
+            }
+            return length == values.length ? values : Arrays.copyOf(values, length);
+        }
+
+        private State readCheckpoint(int checkpointIdx) {
+            reader.seek(checkpointPositions[checkpointIdx] + 1);
+            reader.readVarLong(); // step delta
+            State state = new State();
+            state.step = checkpointSteps[checkpointIdx];
+            state.instructionPointer = (int) reader.readVarLong();
+            state.relativeBase = unZigZag(reader.readVarLong());
+            state.inputsConsumed = (int) reader.readVarLong();
+            state.memory = new long[(int) reader.readVarLong()];
+            reader.getLongs(state.memory);
+            return state;
+        }
+
+        private static int countBefore(long[] steps, int count, long step) {
+            int idx = Arrays.binarySearch(steps, 0, count, step);
+            if (idx < 0) {
+                return -idx - 1;
+            }
+            while (idx > 0 && steps[idx - 1] == step) {
+                idx--;
+            }
+            return idx;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not close the trace file", e);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over a read-only file mapped in windows of {@link #MAP_CHUNK_SIZE} bytes
+     */
+    private static class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowOffset;
+
+        private MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            size = channel.size();
+            seek(0);
+        }
+
+        private long position() {
+            return windowOffset + window.position();
+        }
+
+        private boolean hasRemaining() {
+            return position() < size;
+        }
+
+        private void seek(long position) {
+            if (window != null && position >= windowOffset && position <= windowOffset + window.limit()) {
+                window.position((int) (position - windowOffset));
+                return;
+            }
+            map(position, MAP_CHUNK_SIZE);
+        }
+
+        private void skip(long bytes) {
+            seek(position() + bytes);
+        }
+
+        /**
+         * Remaps the window at the current position if less than the given bytes are left in it
+         */
+        private void ensure(int bytes) {
+            long position = position();
+            if (window.remaining() < bytes && windowOffset + window.limit() < size) {
+                map(position, Math.max(MAP_CHUNK_SIZE, bytes));
+            }
+        }
+
+        private void map(long position, int bytes) {
+            try {
+                windowOffset = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(bytes, Math.max(0, size - position)));
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not map the trace file at %d", position), e);
+            }
+        }
+
+        private byte get() {
+            ensure(1);
+            return window.get();
+        }
+
+        private int getInt() {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        private long readVarLong() {
+            ensure(MAX_VARINT_SIZE);
+            return IntCodeTrace.readVarLong(window);
+        }
+
+        private void getLongs(long[] values) {
+            int chunkLongs = MAP_CHUNK_SIZE / Long.BYTES;
+            for (int offset = 0; offset < values.length; offset += chunkLongs) {
+                int count = Math.min(chunkLongs, values.length - offset);
+                ensure(count * Long.BYTES);
+                window.asLongBuffer().get(values, offset, count);
+                window.position(window.position() + count * Long.BYTES);
+            }
+        }
+    }
+
+    /**
+     * The computer state restored by the {@link Replay}
+     */
+    public static class State {
+        long step;
+        int instructionPointer;
+        long relativeBase;
+        int inputsConsumed;
+        long[] memory;
+
+        public long getStep() {
+            return step;
+        }
+
+        public int getInstructionPointer() {
+            return instructionPointer;
+        }
+
+        public long getRelativeBase() {
+            return relativeBase;
+        }
+
+        public long[] getMemory() {
+            return memory;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{STEP=%d, IP=%d, RB=%d, IN=%d}", step, instructionPointer, relativeBase, inputsConsumed);
+        }
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,395 @@
+package year2019;
+
+import year2019.Day21.SpringScriptBuilder;
+import year2019.Day21.SpringScriptBuilder.Register;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * Springscript interpreter and synthesizer. Every register holds a truth table over the views of the n sensors
+ * (a view is an n-bit mask, sensor A is the lowest bit), so a single pass over the script evaluates it for every
+ * hull pattern at once.
+ * <p>
+ * The synthesizer is a breadth-first search over the scripts, each level is expanded once, in parallel, and the
+ * scripts one instruction longer are checked while the level is collected. The tables are restricted to the views
+ * seen on the known hulls and scripts leading to the same T, J tables are merged, so the first script found is
+ * a shortest one passing all the known hulls. The search skips up front the scripts walking into a hole or jumping
+ * into one on the tiles the droid cannot avoid, the other tiles are left to the simulation of the crossing.
+ */
+public class SpringScriptSynthesizer {
+    private static final int OP_AND = 0;
+    private static final int OP_OR = 1;
+    private static final int OP_NOT = 2;
+    private static final int JUMP_DISTANCE = 4;
+    private static final int SENSOR_A = 0;
+    private static final int SENSOR_D = 3;
+
+    private final int sensorsCount;
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<Instruction> jumpInstructions = new ArrayList<>();
+    private final List<Hull> hulls = new ArrayList<>();
+
+    public SpringScriptSynthesizer(int sensorsCount) {
+        this.sensorsCount = sensorsCount;
+
+        List<Register> readable = new ArrayList<>(Arrays.asList(Register.values()).subList(0, sensorsCount));
+        readable.add(Register.REG_T);
+        readable.add(Register.REG_J);
+        for (int op = OP_AND; op <= OP_NOT; op++) {
+            for (Register source : readable) {
+                for (Register destination : new Register[]{Register.REG_T, Register.REG_J}) {
+                    if (op != OP_NOT && source == destination) {
+                        continue;
+                    }
+                    Instruction instruction = new Instruction(op, source, destination);
+                    instructions.add(instruction);
+                    if (destination == Register.REG_J) {
+                        jumpInstructions.add(instruction);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a hull the droid failed to cross
+     *
+     * @param hull tiles from the droid position, '#' ground, '.' hole, ground is assumed past the end
+     * @return false if the hull was already known
+     */
+    public boolean addHull(String hull) {
+        Hull newHull = new Hull(hull);
+        if (hulls.stream().anyMatch(known -> Arrays.equals(known.ground, newHull.ground))) {
+            return false;
+        }
+        hulls.add(newHull);
+        return true;
+    }
+
+    /**
+     * @param maxLength max number of instructions
+     * @return a shortest script passing all the known hulls (without the final WALK / RUN)
+     */
+    public Optional<SpringScriptBuilder> synthesize(int maxLength) {
+        boolean[] isUnavoidable = new boolean[1 << sensorsCount];
+        hulls.forEach(hull -> hull.markUnavoidableViews(isUnavoidable));
+        Views views = new Views(hulls.stream()
+                .flatMapToInt(hull -> Arrays.stream(hull.views))
+                .distinct()
+                .sorted()
+                .toArray(), isUnavoidable);
+        Node root = new Node(new long[views.all.length], new long[views.all.length], null, null);
+        if (isSolution(root.j, views)) {
+            return Optional.of(toBuilder(root));
+        }
+
+        Node solution = maxLength > 0 ? getSolutionStep(root, views) : null;
+        Set<Node> visited = ConcurrentHashMap.newKeySet();
+        visited.add(root);
+        List<Node> level = Collections.singletonList(root);
+        for (int length = 2; solution == null && length <= maxLength && !level.isEmpty(); length++) {
+            Queue<Node> nextLevel = new ConcurrentLinkedQueue<>();
+            solution = level.parallelStream()
+                    .flatMap(node -> getNextNodes(node, views))
+                    .filter(visited::add)
+                    .peek(nextLevel::add)
+                    .map(node -> getSolutionStep(node, views))
+                    .filter(Objects::nonNull)
+                    .findAny()
+                    .orElse(null);
+            level = new ArrayList<>(nextLevel);
+        }
+        return Optional.ofNullable(solution).map(this::toBuilder);
+    }
+
+    private Stream<Node> getNextNodes(Node node, Views views) {
+        return instructions.stream().map(instruction -> node.next(instruction, views));
+    }
+
+    /**
+     * The node itself was checked when it was created (or has the J table of a checked node), so a solution one
+     * instruction away has to write J. Its J table is evaluated in place and the node is created only for a solution.
+     *
+     * @return the solution node following the given one, null if none
+     */
+    private Node getSolutionStep(Node node, Views views) {
+        long[] nextJ = new long[node.j.length];
+        for (Instruction instruction : jumpInstructions) {
+            instruction.apply(views.getTable(instruction.source, node.t, node.j), node.j, nextJ, views.all);
+            if (isSolution(nextJ, views)) {
+                return node.next(instruction, views);
+            }
+        }
+        return null;
+    }
+
+    private boolean isSolution(long[] jumpTable, Views views) {
+        for (int word = 0; word < jumpTable.length; word++) {
+            if ((jumpTable[word] & views.mustJump[word]) != views.mustJump[word] || (jumpTable[word] & views.mustWalk[word]) != 0) {
+                return false;
+            }
+        }
+        // the latest hulls are the ones the previous shortest scripts failed on, they reject the most candidates
+        for (int i = hulls.size() - 1; i >= 0; i--) {
+            if (!hulls.get(i).isCrossedBy(jumpTable, views)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SpringScriptBuilder toBuilder(Node solution) {
+        Deque<Instruction> script = new ArrayDeque<>();
+        for (Node node = solution; node.instruction != null; node = node.parent) {
+            script.push(node.instruction);
+        }
+        SpringScriptBuilder builder = new SpringScriptBuilder();
+        for (Instruction instruction : script) {
+            builder = instruction.appendTo(builder);
+        }
+        return builder;
+    }
+
+    private static boolean isGround(int view, int sensor) {
+        return (view >> sensor & 1) == 1;
+    }
+
+    private static void setBit(long[] table, int bit) {
+        table[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+    }
+
+    private static boolean getBit(long[] table, int bit) {
+        return (table[bit / Long.SIZE] >>> (bit % Long.SIZE) & 1) == 1;
+    }
+
+    private static class Instruction {
+        private final int op;
+        private final Register source;
+        private final Register destination;
+
+        private Instruction(int op, Register source, Register destination) {
+            this.op = op;
+            this.source = source;
+            this.destination = destination;
+        }
+
+        private void apply(long[] x, long[] y, long[] result, long[] all) {
+            for (int word = 0; word < result.length; word++) {
+                switch (op) {
+                    case OP_AND:
+                        result[word] = x[word] & y[word];
+                        break;
+                    case OP_OR:
+                        result[word] = x[word] | y[word];
+                        break;
+                    default:
+                        result[word] = ~x[word] & all[word];
+                }
+            }
+        }
+
+        private SpringScriptBuilder appendTo(SpringScriptBuilder builder) {
+            switch (op) {
+                case OP_AND:
+                    return builder.and(source, destination);
+                case OP_OR:
+                    return builder.or(source, destination);
+                default:
+                    return builder.not(source, destination);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s", op == OP_AND ? "AND" : op == OP_OR ? "OR" : "NOT", source, destination);
+        }
+    }
+
+    /**
+     * Truth tables of the sensors restricted to the chosen views, bit i of a table is the value for the i-th view
+     */
+    private class Views {
+        /**
+         * bit of the view in the tables, -1 if the view was not chosen
+         */
+        private final int[] bitOfView;
+        private final long[] all;
+        private final long[][] sensors;
+        /**
+         * unavoidable views in which the droid has to jump (hole 1 tile away, ground where it lands)
+         */
+        private final long[] mustJump;
+        /**
+         * unavoidable views in which the droid must not jump (ground 1 tile away, hole where it would land)
+         */
+        private final long[] mustWalk;
+
+        /**
+         * @param isUnavoidable views the droid sees on every crossing of some hull, only they constrain the jumps
+         *                      up front - the other ones may be skipped by a jump, so any choice can be right there
+         */
+        private Views(int[] views, boolean[] isUnavoidable) {
+            int wordsCount = Math.max(1, (views.length + Long.SIZE - 1) / Long.SIZE);
+            bitOfView = new int[1 << sensorsCount];
+            Arrays.fill(bitOfView, -1);
+            all = new long[wordsCount];
+            mustJump = new long[wordsCount];
+            mustWalk = new long[wordsCount];
+            sensors = new long[sensorsCount][wordsCount];
+            for (int bit = 0; bit < views.length; bit++) {
+                int view = views[bit];
+                bitOfView[view] = bit;
+                setBit(all, bit);
+                for (int sensor = 0; sensor < sensorsCount; sensor++) {
+                    if (isGround(view, sensor)) {
+                        setBit(sensors[sensor], bit);
+                    }
+                }
+                if (!isUnavoidable[view]) {
+                    continue;
+                }
+                if (!isGround(view, SENSOR_A) && isGround(view, SENSOR_D)) {
+                    setBit(mustJump, bit);
+                } else if (isGround(view, SENSOR_A) && !isGround(view, SENSOR_D)) {
+                    setBit(mustWalk, bit);
+                }
+            }
+        }
+
+        private long[] getTable(Register register, long[] t, long[] j) {
+            if (register == Register.REG_T) {
+                return t;
+            }
+            return register == Register.REG_J ? j : sensors[register.ordinal()];
+        }
+
+        private boolean isJumping(long[] jumpTable, int view) {
+            int bit = bitOfView[view];
+            return bit != -1 && getBit(jumpTable, bit);
+        }
+    }
+
+    /**
+     * T and J registers after a script, the script is read backwards from the parent nodes
+     */
+    private static class Node {
+        private final long[] t;
+        private final long[] j;
+        private final Node parent;
+        private final Instruction instruction;
+        private final int hash;
+
+        private Node(long[] t, long[] j, Node parent, Instruction instruction) {
+            this.t = t;
+            this.j = j;
+            this.parent = parent;
+            this.instruction = instruction;
+            hash = 31 * Arrays.hashCode(t) + Arrays.hashCode(j);
+        }
+
+        private Node next(Instruction instruction, Views views) {
+            long[] nextT = t;
+            long[] nextJ = j;
+            long[] source = views.getTable(instruction.source, t, j);
+            if (instruction.destination == Register.REG_J) {
+                nextJ = new long[j.length];
+                instruction.apply(source, j, nextJ, views.all);
+            } else {
+                nextT = new long[t.length];
+                instruction.apply(source, t, nextT, views.all);
+            }
+            return new Node(nextT, nextJ, this, instruction);
+        }
+
+        /**
+         * nodes are equal when their registers are, no matter the script
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Node && Arrays.equals(t, ((Node) o).t) && Arrays.equals(j, ((Node) o).j);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private class Hull {
+        private final boolean[] ground;
+        /**
+         * view of the droid standing on the given tile
+         */
+        private final int[] views;
+
+        private Hull(String hull) {
+            ground = new boolean[hull.length()];
+            for (int i = 0; i < ground.length; i++) {
+                ground[i] = hull.charAt(i) == '#';
+            }
+            views = new int[ground.length];
+            for (int position = 0; position < ground.length; position++) {
+                for (int sensor = 0; sensor < sensorsCount; sensor++) {
+                    int tile = position + 1 + sensor;
+                    if (tile >= ground.length || ground[tile]) {
+                        views[position] |= 1 << sensor;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Marks the views of the tiles the droid stands on in every crossing of the hull. The tile is unavoidable when
+         * it lies on some crossing and no jump between two tiles of the crossings goes over it.
+         */
+        private void markUnavoidableViews(boolean[] isUnavoidable) {
+            boolean[] isReachable = new boolean[ground.length];
+            isReachable[0] = true;
+            for (int position = 0; position < ground.length; position++) {
+                for (int step : new int[]{1, JUMP_DISTANCE}) {
+                    if (isReachable[position] && position + step < ground.length && ground[position + step]) {
+                        isReachable[position + step] = true;
+                    }
+                }
+            }
+            boolean[] isOnCrossing = new boolean[ground.length];
+            for (int position = ground.length - 1; position >= 0; position--) {
+                isOnCrossing[position] = isReachable[position]
+                        && (canFinishFrom(isOnCrossing, position + 1) || canFinishFrom(isOnCrossing, position + JUMP_DISTANCE));
+            }
+            for (int position = 0; position < ground.length; position++) {
+                if (!isOnCrossing[position]) {
+                    continue;
+                }
+                boolean isJumpedOver = false;
+                for (int from = Math.max(0, position - JUMP_DISTANCE + 1); from < position; from++) {
+                    isJumpedOver |= isOnCrossing[from] && canFinishFrom(isOnCrossing, from + JUMP_DISTANCE);
+                }
+                if (!isJumpedOver) {
+                    isUnavoidable[views[position]] = true;
+                }
+            }
+        }
+
+        /**
+         * @return true if the droid standing on the tile can finish the crossing, past the end is always fine
+         */
+        private boolean canFinishFrom(boolean[] isOnCrossing, int position) {
+            return position >= ground.length || isOnCrossing[position];
+        }
+
+        private boolean isCrossedBy(long[] jumpTable, Views tableViews) {
+            int position = 0;
+            while (position < ground.length) {
+                position += tableViews.isJumping(jumpTable, views[position]) ? JUMP_DISTANCE : 1;
+                if (position < ground.length && !ground[position]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
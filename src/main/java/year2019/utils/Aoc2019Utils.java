@@ -2,7 +2,6 @@ package year2019.utils;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class Aoc2019Utils {
     /* parsed instruction indexes */
@@ -44,20 +43,6 @@ public class Aoc2019Utils {
         return parsedCode;
     }
 
-    public static TreeSet<Integer> createSieve(int maxValue) {
-        List<Integer> sieve = IntStream.range(2, maxValue + 1).boxed().collect(Collectors.toList());
-        sieve = sieve.stream().filter(number -> number == 2 || number % 2 != 0).collect(Collectors.toList());
-
-        for (int i = 3; i * i < maxValue; i += 2) {
-            for (int j = 2 * i; j < maxValue; j += i) {
-                sieve.remove(Integer.valueOf(j));
-            }
-        }
-//        sieve.forEach(el -> System.out.format("%d ", el));
-//        System.out.println();
-        return new TreeSet<>(sieve);
-    }
-
     public static long[] copyToLargerMemory(long[] parsedCode, int size) {
         long[] largerMemory = new long[size];
         System.arraycopy(parsedCode, 0, largerMemory, 0, parsedCode.length);
@@ -0,0 +1,81 @@
+package year2019.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of the (int priority, long value) pairs kept in the parallel arrays - for the values that take
+ * the whole long, so the priority cannot be packed above them as in {@link LongMinHeap}.
+ */
+public class IntLongMinHeap {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public void add(int priority, long value) {
+        if (size == priorities.length) {
+            priorities = Arrays.copyOf(priorities, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        int idx = size++;
+        while (idx > 0) {
+            int parent = (idx - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            priorities[idx] = priorities[parent];
+            values[idx] = values[parent];
+            idx = parent;
+        }
+        priorities[idx] = priority;
+        values[idx] = value;
+    }
+
+    /**
+     * @return priority of the value {@link #poll()} would return
+     */
+    public int peekPriority() {
+        if (size == 0) {
+            throw new RuntimeException("Cannot peek into an empty heap");
+        }
+        return priorities[0];
+    }
+
+    /**
+     * @return the value with the lowest priority, removed from the heap
+     */
+    public long poll() {
+        if (size == 0) {
+            throw new RuntimeException("Cannot poll from an empty heap");
+        }
+        long lowest = values[0];
+        int lastPriority = priorities[--size];
+        long lastValue = values[size];
+        int idx = 0;
+        int half = size >>> 1;
+        while (idx < half) {
+            int child = 2 * idx + 1;
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (lastPriority <= priorities[child]) {
+                break;
+            }
+            priorities[idx] = priorities[child];
+            values[idx] = values[child];
+            idx = child;
+        }
+        priorities[idx] = lastPriority;
+        values[idx] = lastValue;
+        return lowest;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+}
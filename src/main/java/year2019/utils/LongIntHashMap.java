@@ -0,0 +1,133 @@
+package year2019.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing (linear probing) hash map from primitive long keys to int values - no boxing and no allocation
+ * per entry. Two ints can be packed into a key with {@link #pack(int, int)}.
+ */
+public class LongIntHashMap {
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size = 0;
+    private int mask;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackY(long key) {
+        return (int) key;
+    }
+
+    public int get(long key, int defaultValue) {
+        int idx = findIdx(key);
+        return used[idx] ? values[idx] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return used[findIdx(key)];
+    }
+
+    /**
+     * @return the previous value or the default value if the key was absent
+     */
+    public int put(long key, int value, int defaultValue) {
+        int idx = findIdx(key);
+        if (used[idx]) {
+            int previous = values[idx];
+            values[idx] = value;
+            return previous;
+        }
+        used[idx] = true;
+        keys[idx] = key;
+        values[idx] = value;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return defaultValue;
+    }
+
+    public void put(long key, int value) {
+        put(key, value, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int idx = 0; idx < keys.length; idx++) {
+            if (used[idx]) {
+                consumer.accept(keys[idx], values[idx]);
+            }
+        }
+    }
+
+    private int findIdx(long key) {
+        int idx = hash(key) & mask;
+        while (used[idx] && keys[idx] != key) {
+            idx = (idx + 1) & mask;
+        }
+        return idx;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(2 * keys.length);
+        for (int oldIdx = 0; oldIdx < oldKeys.length; oldIdx++) {
+            if (oldUsed[oldIdx]) {
+                int idx = findIdx(oldKeys[oldIdx]);
+                used[idx] = true;
+                keys[idx] = oldKeys[oldIdx];
+                values[idx] = oldValues[oldIdx];
+            }
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+}
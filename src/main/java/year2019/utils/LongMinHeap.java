@@ -0,0 +1,68 @@
+package year2019.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs - a priority queue without boxing. Priority and payload can be packed into
+ * a single value, the priority in the high bits.
+ */
+public class LongMinHeap {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] heap = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public void add(long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        int idx = size++;
+        while (idx > 0) {
+            int parent = (idx - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[idx] = heap[parent];
+            idx = parent;
+        }
+        heap[idx] = value;
+    }
+
+    /**
+     * @return the lowest value, removed from the heap
+     */
+    public long poll() {
+        if (size == 0) {
+            throw new RuntimeException("Cannot poll from an empty heap");
+        }
+        long lowest = heap[0];
+        long last = heap[--size];
+        int idx = 0;
+        int half = size >>> 1;
+        while (idx < half) {
+            int child = 2 * idx + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[idx] = heap[child];
+            idx = child;
+        }
+        heap[idx] = last;
+        return lowest;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
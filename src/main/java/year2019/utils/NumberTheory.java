@@ -0,0 +1,49 @@
+package year2019.utils;
+
+import java.math.BigInteger;
+
+/**
+ * Greatest common divisor and least common multiple, e.g. for combining the periods of independent cycles
+ */
+public class NumberTheory {
+
+    public static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit a long - use {@link #lcm(BigInteger, BigInteger)} then
+     */
+    public static long lcm(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        long lcm = Math.abs(Math.multiplyExact(a / gcd(a, b), b));
+        if (lcm < 0) {
+            throw new ArithmeticException(String.format("lcm(%d, %d) does not fit a long", a, b));
+        }
+        return lcm;
+    }
+
+    public static long lcm(long... values) {
+        long lcm = 1;
+        for (long value : values) {
+            lcm = lcm(lcm, value);
+        }
+        return lcm;
+    }
+
+    public static BigInteger lcm(BigInteger a, BigInteger b) {
+        if (a.signum() == 0 || b.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        return a.divide(a.gcd(b)).multiply(b).abs();
+    }
+}
@@ -0,0 +1,127 @@
+package year2019.utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Segmented sieve of Eratosthenes over the odd numbers only, a single bit per odd number (bit i stands for 2i + 1).
+ * The segments fit the CPU cache and cover whole words of the bitset, so they can be sieved in parallel.
+ * <p>
+ * Replaces the former {@code Aoc2019Utils.createSieve}. Its only caller, the Day12 period LCM by prime factoring, needs
+ * no primes since {@link NumberTheory#lcm(long...)} combines the periods by gcd.
+ */
+public class PrimeSieve {
+    /**
+     * odd numbers per segment - 32 KB of bits
+     */
+    static final int SEGMENT_ODDS = 1 << 18;
+    private static final long MAX_LIMIT = 2L * Long.SIZE * Integer.MAX_VALUE - 1;
+
+    private final long limit;
+    private final long oddsCount;
+    /**
+     * set bit i means 2i + 1 is not a prime
+     */
+    private final long[] composites;
+
+    public PrimeSieve(long limit) {
+        this(limit, false);
+    }
+
+    /**
+     * @param limit the greatest number checked
+     */
+    public PrimeSieve(long limit, boolean isParallel) {
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new RuntimeException(String.format("The sieve limit %d is not in [0, %d]", limit, MAX_LIMIT));
+        }
+        this.limit = limit;
+        oddsCount = (limit + 1) / 2;
+        composites = new long[(int) ((oddsCount + Long.SIZE - 1) / Long.SIZE)];
+        if (oddsCount > 0) {
+            composites[0] |= 1; // 1 is not a prime
+        }
+
+        int[] basePrimes = getOddPrimesUpTo((int) Math.sqrt((double) limit) + 1);
+        int segmentsCount = (int) ((oddsCount + SEGMENT_ODDS - 1) / SEGMENT_ODDS);
+        IntStream segments = IntStream.range(0, segmentsCount);
+        (isParallel ? segments.parallel() : segments).forEach(segment -> sieveSegment(segment, basePrimes));
+    }
+
+    private void sieveSegment(int segment, int[] basePrimes) {
+        long lowIdx = (long) segment * SEGMENT_ODDS;
+        long highIdx = Math.min(lowIdx + SEGMENT_ODDS, oddsCount);
+        long lowValue = 2 * lowIdx + 1;
+        long highValue = 2 * highIdx - 1;
+        for (int prime : basePrimes) {
+            long square = (long) prime * prime;
+            if (square > highValue) {
+                break;
+            }
+            long start = Math.max(square, (lowValue + prime - 1) / prime * prime);
+            if (start % 2 == 0) {
+                start += prime;
+            }
+            for (long idx = (start - 1) / 2; idx < highIdx; idx += prime) {
+                composites[(int) (idx >>> 6)] |= 1L << idx;
+            }
+        }
+    }
+
+    private static int[] getOddPrimesUpTo(int maxValue) {
+        boolean[] isComposite = new boolean[maxValue + 1];
+        int[] primes = new int[maxValue + 1];
+        int primesCount = 0;
+        for (int number = 3; number <= maxValue; number += 2) {
+            if (isComposite[number]) {
+                continue;
+            }
+            primes[primesCount++] = number;
+            for (long multiple = (long) number * number; multiple <= maxValue; multiple += 2L * number) {
+                isComposite[(int) multiple] = true;
+            }
+        }
+        return Arrays.copyOf(primes, primesCount);
+    }
+
+    public boolean isPrime(long number) {
+        if (number > limit) {
+            throw new RuntimeException(String.format("%d is above the sieve limit %d", number, limit));
+        }
+        if (number < 2) {
+            return false;
+        }
+        if (number % 2 == 0) {
+            return number == 2;
+        }
+        long idx = number / 2;
+        return (composites[(int) (idx >>> 6)] >>> idx & 1) == 0;
+    }
+
+    public long getPrimesCount() {
+        if (limit < 2) {
+            return 0;
+        }
+        long count = 1; // 2
+        for (int word = 0; word < composites.length; word++) {
+            long primes = ~composites[word];
+            long wordEnd = (long) (word + 1) * Long.SIZE;
+            if (wordEnd > oddsCount) {
+                primes &= (1L << (oddsCount % Long.SIZE)) - 1;
+            }
+            count += Long.bitCount(primes);
+        }
+        return count;
+    }
+
+    /**
+     * @return primes up to the limit in ascending order
+     */
+    public LongStream primes() {
+        LongStream oddPrimes = LongStream.range(1, oddsCount)
+                .filter(idx -> (composites[(int) (idx >>> 6)] >>> idx & 1) == 0)
+                .map(idx -> 2 * idx + 1);
+        return limit < 2 ? LongStream.empty() : LongStream.concat(LongStream.of(2), oddPrimes);
+    }
+}
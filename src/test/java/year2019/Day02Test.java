@@ -0,0 +1,107 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Day02Test {
+    private static final long EXPECTED_OUTPUT = 19690720;
+    private static final int PROGRAM_LENGTH = 100;
+    /**
+     * 7 * noun^2 + verb + 1000
+     */
+    private static final long[] LINEAR_IN_VERB_PROGRAM = padded(1, 0, 0, 3, 2, 1, 21, 30, 2, 30, 1, 30, 1, 30, 2, 0, 1, 0, 22, 0, 99, 7, 1000);
+    /**
+     * noun * verb^2 + noun + 7
+     */
+    private static final long[] NONLINEAR_IN_VERB_PROGRAM = padded(1, 0, 0, 3, 2, 2, 2, 30, 2, 30, 1, 30, 1, 30, 1, 0, 1, 0, 21, 0, 99, 7);
+    private static final long[][] PROGRAMS = {LINEAR_IN_VERB_PROGRAM, NONLINEAR_IN_VERB_PROGRAM};
+    private static final int[][] NOUNS_AND_VERBS = {{0, 0}, {0, 99}, {99, 0}, {12, 2}, {37, 42}, {99, 99}};
+
+    @Test
+    public void addMulPrograms_evaluateSymbolically_sameAsTheProgramRun() {
+        for (long[] program : PROGRAMS) {
+            Day02.Polynomial output = Day02.Polynomial.evaluateSymbolically(program).get();
+            for (int[] nounAndVerb : NOUNS_AND_VERBS) {
+                assertEquals(output.toString(), run(program, nounAndVerb[0], nounAndVerb[1]), output.evaluate(nounAndVerb[0], nounAndVerb[1]));
+            }
+        }
+    }
+
+    @Test
+    public void addMulPrograms_solve_firstPairOfTheBruteForce() {
+        for (long[] program : PROGRAMS) {
+            Day02.Polynomial output = Day02.Polynomial.evaluateSymbolically(program).get();
+            for (int[] nounAndVerb : NOUNS_AND_VERBS) {
+                long value = run(program, nounAndVerb[0], nounAndVerb[1]);
+                assertEquals(output.toString(), findNounAndVerb(program, value), output.solve(value));
+            }
+            assertEquals(-1, output.solve(-1));
+        }
+    }
+
+    /**
+     * mem[0] = mem[noun] + mem[verb], the output depends on the values read from the symbolic addresses
+     */
+    @Test
+    public void symbolicAddresses_runProgramV2_fallsBackToTheBatch() {
+        long[] program = padded(1, 1, 2, 0, 99);
+        program[50] = EXPECTED_OUTPUT - 720;
+        program[60] = 720;
+
+        assertFalse(Day02.Polynomial.evaluateSymbolically(program).isPresent());
+        assertEquals(5060, new Day02().runProgramV2(program));
+    }
+
+    /**
+     * verb^16 + noun * 19690720 overflows a long from the verb 16 on, before the solution (1, 0) is reached
+     */
+    @Test
+    public void overflowingPolynomial_runProgramV2_fallsBackToTheBatch() {
+        long[] program = padded(1, 0, 0, 3, 2, 2, 2, 30, 2, 30, 30, 30, 2, 30, 30, 30, 2, 30, 30, 30, 2, 1, 40, 31, 1, 30, 31, 0, 99);
+        program[40] = EXPECTED_OUTPUT;
+
+        Optional<Day02.Polynomial> output = Day02.Polynomial.evaluateSymbolically(program);
+        assertTrue(output.isPresent());
+        try {
+            output.get().solve(EXPECTED_OUTPUT);
+            fail("the polynomial should overflow");
+        } catch (ArithmeticException e) {
+            // expected, the batch has to be run
+        }
+        assertEquals(findNounAndVerb(program, EXPECTED_OUTPUT), new Day02().runProgramV2(program));
+        assertEquals(100, new Day02().runProgramV2(program));
+    }
+
+    private static long findNounAndVerb(long[] program, long value) {
+        for (int noun = 0; noun < 100; noun++) {
+            for (int verb = 0; verb < 100; verb++) {
+                if (run(program, noun, verb) == value) {
+                    return 100 * noun + verb;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static long run(long[] program, long noun, long verb) {
+        long[] memory = program.clone();
+        memory[1] = noun;
+        memory[2] = verb;
+        int ip = 0;
+        while (ip < memory.length) {
+            ip = Day02.runBasicInstructions(memory, ip);
+        }
+        return memory[0];
+    }
+
+    private static long[] padded(long... code) {
+        return Arrays.copyOf(code, PROGRAM_LENGTH);
+    }
+}
@@ -0,0 +1,84 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class Day03Test {
+
+    @Test
+    public void overlapThroughOrigin_findCrossings_pointNextToOrigin() {
+        List<Day03.Crossing> crossings = new Day03().findCrossings(Arrays.asList("R8,U5", "R3,U2"));
+
+        assertEquals(1, getClosestDistance(crossings));
+        assertEquals(2, getFewestSteps(crossings));
+    }
+
+    @Test
+    public void randomWires_findCrossings_sameAsWalkingTheGrid() {
+        Random random = new Random(3);
+        String directions = "URDL";
+        for (int test = 0; test < 2000; test++) {
+            String[] wires = new String[2];
+            for (int wire = 0; wire < wires.length; wire++) {
+                StringJoiner moves = new StringJoiner(",");
+                for (int move = 0; move < 1 + random.nextInt(8); move++) {
+                    moves.add(String.format("%c%d", directions.charAt(random.nextInt(4)), 1 + random.nextInt(6)));
+                }
+                wires[wire] = moves.toString();
+            }
+
+            Map<Long, Long> firstSteps = walk(wires[0]);
+            Map<Long, Long> otherFirstSteps = walk(wires[1]);
+            long expectedDistance = Long.MAX_VALUE;
+            long expectedSteps = Long.MAX_VALUE;
+            for (Map.Entry<Long, Long> entry : firstSteps.entrySet()) {
+                Long otherSteps = otherFirstSteps.get(entry.getKey());
+                if (otherSteps != null) {
+                    int x = (int) (entry.getKey() >> Integer.SIZE);
+                    int y = (int) (long) entry.getKey();
+                    expectedDistance = Math.min(expectedDistance, Math.abs(x) + Math.abs(y));
+                    expectedSteps = Math.min(expectedSteps, entry.getValue() + otherSteps);
+                }
+            }
+
+            List<Day03.Crossing> crossings = new Day03().findCrossings(Arrays.asList(wires));
+            String message = String.join(" / ", wires);
+            assertEquals(message, expectedDistance, getClosestDistance(crossings));
+            assertEquals(message, expectedSteps, getFewestSteps(crossings));
+        }
+    }
+
+    /**
+     * @return steps of the wire when it first reaches each point (x, y packed into a long), without the origin
+     */
+    private Map<Long, Long> walk(String wire) {
+        Map<Long, Long> firstSteps = new HashMap<>();
+        int x = 0;
+        int y = 0;
+        long steps = 0;
+        for (String move : wire.split(",")) {
+            int dx = move.charAt(0) == 'R' ? 1 : move.charAt(0) == 'L' ? -1 : 0;
+            int dy = move.charAt(0) == 'U' ? 1 : move.charAt(0) == 'D' ? -1 : 0;
+            for (int i = 0; i < Integer.parseInt(move.substring(1)); i++) {
+                x += dx;
+                y += dy;
+                steps++;
+                if (x != 0 || y != 0) {
+                    firstSteps.putIfAbsent((long) x << Integer.SIZE | (y & 0xFFFFFFFFL), steps);
+                }
+            }
+        }
+        return firstSteps;
+    }
+
+    private long getClosestDistance(List<Day03.Crossing> crossings) {
+        return crossings.stream().mapToLong(Day03.Crossing::getDistance).min().orElse(Long.MAX_VALUE);
+    }
+
+    private long getFewestSteps(List<Day03.Crossing> crossings) {
+        return crossings.stream().mapToLong(crossing -> crossing.steps).min().orElse(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,65 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class Day04Test {
+    private static final int LIMIT = 300_000;
+
+    @Test
+    public void smallRanges_countNumbersMeetingCriteria_sameAsBruteForce() {
+        for (Day04.RepeatRule rule : Day04.RepeatRule.values()) {
+            int[] prefixCounts = getBruteForcePrefixCounts(rule);
+            for (int lower = 0; lower <= 150; lower++) {
+                for (int upper = lower - 1; upper <= 150; upper++) {
+                    assertCount(prefixCounts, lower, upper, rule);
+                }
+            }
+            Random random = new Random(4);
+            for (int i = 0; i < 500; i++) {
+                int lower = random.nextInt(LIMIT);
+                int upper = lower + random.nextInt(LIMIT - lower);
+                assertCount(prefixCounts, lower, upper, rule);
+            }
+            assertCount(prefixCounts, 0, LIMIT - 1, rule);
+        }
+    }
+
+    private static void assertCount(int[] prefixCounts, int lower, int upper, Day04.RepeatRule rule) {
+        long expected = upper < lower ? 0 : prefixCounts[upper + 1] - prefixCounts[lower];
+        BigInteger count = Day04.countNumbersMeetingCriteria(BigInteger.valueOf(lower), BigInteger.valueOf(upper), rule);
+        assertEquals(String.format("%s [%d, %d]", rule, lower, upper), expected, count.longValue());
+    }
+
+    /**
+     * @return prefixCounts[n] - count of the matching numbers in [0, n)
+     */
+    private static int[] getBruteForcePrefixCounts(Day04.RepeatRule rule) {
+        int[] prefixCounts = new int[LIMIT + 1];
+        for (int number = 0; number < LIMIT; number++) {
+            prefixCounts[number + 1] = prefixCounts[number] + (isMatching(number, rule) ? 1 : 0);
+        }
+        return prefixCounts;
+    }
+
+    private static boolean isMatching(int number, Day04.RepeatRule rule) {
+        char[] digits = String.valueOf(number).toCharArray();
+        boolean isRuleMet = false;
+        int runStart = 0;
+        for (int i = 1; i <= digits.length; i++) {
+            if (i < digits.length && digits[i] < digits[i - 1]) {
+                return false;
+            }
+            if (i == digits.length || digits[i] != digits[i - 1]) {
+                int runLength = i - runStart;
+                isRuleMet |= rule == Day04.RepeatRule.ANY_DOUBLE ? runLength >= 2 : runLength == 2;
+                runStart = i;
+            }
+        }
+        return isRuleMet;
+    }
+}
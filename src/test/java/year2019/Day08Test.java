@@ -0,0 +1,34 @@
+package year2019;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Day08Test {
+
+    @Test
+    public void layers_decode_layerWithFewestZeros() {
+        Day08.SpaceImageDecoder decoder = new Day08.SpaceImageDecoder(3, 2);
+        decoder.decode("120456781212\n000112\n");
+
+        assertEquals(1, decoder.getLayerWithFewestZeros());
+        assertEquals(4, decoder.getOnesTimesTwosOnLayerWithFewestZeros());
+    }
+
+    @Test
+    public void transparentPixels_decode_firstNonTransparentVisible() {
+        Day08.SpaceImageDecoder decoder = new Day08.SpaceImageDecoder(2, 2);
+        decoder.decode("0222112222120000");
+
+        assertArrayEquals(new int[]{0, 1, 1, 0}, decoder.getVisiblePixels());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void incompleteLayer_getVisiblePixels_throws() {
+        Day08.SpaceImageDecoder decoder = new Day08.SpaceImageDecoder(2, 2);
+        decoder.decode("022211");
+
+        decoder.getVisiblePixels();
+    }
+}
@@ -43,9 +43,8 @@ public class Day10Test {
         Day10 day10 = new Day10();
         day10.station = station;
 
-        List<Day10.Point> copyToSort = day10.getPointsSortedByVaporizationOrder(asteroids, comparator);
+        List<Day10.Point> copyToSort = day10.getPointsSortedByVaporizationOrder(asteroids);
 
-        asteroids.forEach(asteroid -> System.out.printf("%s %f%n", asteroid, comparator.getStationClockwiseAngle(asteroid)));
         copyToSort.sort(comparator);
 
         assertEquals(asteroids, copyToSort);
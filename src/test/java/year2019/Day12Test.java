@@ -0,0 +1,33 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Day12Test {
+    private static final int STEPS = 500;
+
+    @Test
+    public void randomMoons_stepBothGravities_sameAxisStates() {
+        Random random = new Random(12);
+        int[] moonsCounts = {2, 4, Day12.SORTED_GRAVITY_MIN_MOONS - 1, Day12.SORTED_GRAVITY_MIN_MOONS, 3 * Day12.SORTED_GRAVITY_MIN_MOONS};
+        for (int moonsCount : moonsCounts) {
+            for (int set = 0; set < 20; set++) {
+                // narrow range, so many moons share a position
+                int[] positions = random.ints(moonsCount, -moonsCount, moonsCount).toArray();
+                Day12.AxisState pairwise = new Day12.AxisState(positions.clone(), Day12.Gravity.PAIRWISE);
+                Day12.AxisState sorted = new Day12.AxisState(positions.clone(), Day12.Gravity.SORTED);
+
+                for (int step = 0; step < STEPS; step++) {
+                    pairwise.step();
+                    sorted.step();
+                    String message = String.format("%d moons, set %d, step %d", moonsCount, set, step);
+                    assertArrayEquals(message, pairwise.positions, sorted.positions);
+                    assertArrayEquals(message, pairwise.velocities, sorted.velocities);
+                }
+            }
+        }
+    }
+}
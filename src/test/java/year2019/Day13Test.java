@@ -0,0 +1,63 @@
+package year2019;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Day13Test {
+    private static final int WIDTH = 10;
+    private static final int PADDLE_Y = 8;
+
+    @Test
+    public void ballFallingFreely_predictBallLandingX_diagonalLanding() {
+        Day13 day13 = createBoard();
+        moveBall(day13, 2, 2, 3, 3);
+
+        assertEquals(7, day13.predictBallLandingX());
+    }
+
+    @Test
+    public void ballFallingTowardsWall_predictBallLandingX_bouncedLanding() {
+        Day13 day13 = createBoard();
+        moveBall(day13, 5, 2, 6, 3);
+
+        assertEquals(6, day13.predictBallLandingX());
+    }
+
+    @Test
+    public void ballGoingUp_predictBallLandingX_followsBall() {
+        Day13 day13 = createBoard();
+        moveBall(day13, 4, 4, 3, 3);
+
+        assertEquals(3, day13.predictBallLandingX());
+    }
+
+    @Test
+    public void blockOnTheWay_predictBallLandingX_followsBall() {
+        Day13 day13 = createBoard();
+        day13.onTileOutput(5, 5, Day13.TileType.BLOCK);
+        moveBall(day13, 2, 2, 3, 3);
+
+        assertEquals(3, day13.predictBallLandingX());
+    }
+
+    /**
+     * walls on the left and right of the board, the paddle at the bottom
+     */
+    private Day13 createBoard() {
+        Day13 day13 = new Day13();
+        day13.clearScreen();
+        for (int y = 0; y <= PADDLE_Y; y++) {
+            day13.onTileOutput(0, y, Day13.TileType.WALL);
+            day13.onTileOutput(WIDTH - 1, y, Day13.TileType.WALL);
+        }
+        day13.onTileOutput(5, PADDLE_Y, Day13.TileType.HORIZONTAL_PADDLE);
+        return day13;
+    }
+
+    private void moveBall(Day13 day13, int fromX, int fromY, int toX, int toY) {
+        day13.onTileOutput(fromX, fromY, Day13.TileType.BALL);
+        day13.onTileOutput(fromX, fromY, Day13.TileType.EMPTY);
+        day13.onTileOutput(toX, toY, Day13.TileType.BALL);
+    }
+}
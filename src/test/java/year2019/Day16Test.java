@@ -0,0 +1,43 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Day16Test {
+
+    @Test
+    public void smallBinomials_mod10_sameAsExactValues() {
+        for (int n = 0; n < 60; n++) {
+            BigInteger binomial = BigInteger.ONE;
+            for (int k = 0; k <= n; k++) {
+                assertEquals(binomial.mod(BigInteger.TEN).intValue(), Day16.binomialMod10(n, k));
+                binomial = binomial.multiply(BigInteger.valueOf(n - k)).divide(BigInteger.valueOf(k + 1));
+            }
+        }
+    }
+
+    @Test
+    public void repeatedSignal_decodeBackHalf_sameAsAllPhases() {
+        Day16 day = new Day16();
+        String received = "03036732577212944063491565474664";
+        int signalRepeats = 5;
+        int phasesNumber = 17;
+        int[] signal = day.readSignal(received);
+
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < signalRepeats; i++) {
+            repeated.append(received);
+        }
+        int[] transformed = day.runFlawedFrequencyTransmission(day.readSignal(repeated.toString()), phasesNumber);
+
+        for (int offset = transformed.length / 2; offset + 8 <= transformed.length; offset++) {
+            int[] expected = Arrays.copyOfRange(transformed, offset, offset + 8);
+            assertArrayEquals(expected, day.decodeBackHalf(signal, signalRepeats, phasesNumber, offset, 8));
+        }
+    }
+}
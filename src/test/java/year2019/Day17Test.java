@@ -0,0 +1,48 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Day17Test {
+    private static final String EXAMPLE_PATH = "R,8,R,8,R,4,R,4,R,8,L,6,L,2,R,4,R,4,R,8,R,8,R,8,L,6,L,2";
+    private static final int MAX_ROUTINE_LENGTH = 20;
+    private static final String[] ROUTINE_NAMES = {"A", "B", "C"};
+
+    @Test
+    public void publishedExamplePath_find_functionsExpandingToThePath() {
+        List<Day17.Move> moves = new ArrayList<>();
+        String[] codes = EXAMPLE_PATH.split(",");
+        for (int i = 0; i < codes.length; i += 2) {
+            Day17.Turn turn = codes[i].equals("L") ? Day17.Turn.LEFT : Day17.Turn.RIGHT;
+            moves.add(new Day17.Move(turn, Integer.parseInt(codes[i + 1])));
+        }
+
+        Day17.MovementFunctions functions = new Day17.MovementFunctionsSearch(moves, MAX_ROUTINE_LENGTH, 10)
+                .find()
+                .get();
+
+        assertTrue(functions.mainRoutine, functions.mainRoutine.length() <= MAX_ROUTINE_LENGTH);
+        for (String routine : functions.routines) {
+            assertTrue(routine, routine.length() <= MAX_ROUTINE_LENGTH);
+        }
+        List<String> expanded = new ArrayList<>();
+        for (String call : functions.mainRoutine.split(",")) {
+            expanded.add(functions.routines[indexOf(call)]);
+        }
+        assertEquals(EXAMPLE_PATH, String.join(",", expanded));
+    }
+
+    private static int indexOf(String routineName) {
+        for (int i = 0; i < ROUTINE_NAMES.length; i++) {
+            if (ROUTINE_NAMES[i].equals(routineName)) {
+                return i;
+            }
+        }
+        throw new RuntimeException(String.format("Unknown routine %s", routineName));
+    }
+}
@@ -0,0 +1,79 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class Day18V2Test {
+
+    @Test
+    public void singleRobotExamples_collectAllKeys_fewestSteps() {
+        assertEquals(86, collectAllKeys(
+                "########################",
+                "#f.D.E.e.C.b.A.@.a.B.c.#",
+                "######################.#",
+                "#d.....................#",
+                "########################"));
+        assertEquals(132, collectAllKeys(
+                "########################",
+                "#...............b.C.D.f#",
+                "#.######################",
+                "#.....@.a.B.c.d.A.e.F.g#",
+                "########################"));
+        assertEquals(136, collectAllKeys(
+                "#################",
+                "#i.G..c...e..H.p#",
+                "########.########",
+                "#j.A..b...f..D.o#",
+                "########@########",
+                "#k.E..a...g..B.n#",
+                "########.########",
+                "#l.F..d...h..C.m#",
+                "#################"));
+        assertEquals(81, collectAllKeys(
+                "########################",
+                "#@..............ac.GI.b#",
+                "###d#e#f################",
+                "###A#B#C################",
+                "###g#h#i################",
+                "########################"));
+    }
+
+    @Test
+    public void fourRobotsExamples_collectAllKeys_fewestSteps() {
+        assertEquals(8, collectAllKeys(
+                "#######",
+                "#a.#Cd#",
+                "##@#@##",
+                "#######",
+                "##@#@##",
+                "#cB#Ab#",
+                "#######"));
+        assertEquals(24, collectAllKeys(
+                "###############",
+                "#d.ABC.#.....a#",
+                "######@#@######",
+                "###############",
+                "######@#@######",
+                "#b.....#.....c#",
+                "###############"));
+    }
+
+    @Test
+    public void longCorridor_collectAllKeys_costAboveSeventeenBits() {
+        char[] corridor = new char[70_000];
+        Arrays.fill(corridor, '.');
+        String half = new String(corridor);
+        String row = "#a" + half + "@" + half + "b#";
+        char[] wall = new char[row.length()];
+        Arrays.fill(wall, '#');
+
+        assertEquals(70_001 + 140_002, collectAllKeys(new String(wall), row, new String(wall)));
+    }
+
+    private int collectAllKeys(String... maze) {
+        return new Day18V2.KeyVault(Arrays.stream(maze).map(String::toCharArray).toArray(char[][]::new)).collectAllKeys();
+    }
+}
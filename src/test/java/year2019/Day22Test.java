@@ -3,10 +3,13 @@ package year2019;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static org.junit.Assert.assertEquals;
+
 public class Day22Test {
 
     @Test
@@ -48,4 +51,25 @@ public class Day22Test {
 
         System.out.println(cards);
     }
+
+    @Test
+    public void elevenCards_linearShuffle_sameAsDealtCards() {
+        List<String> lines = Arrays.asList("deal with increment 7", "deal into new stack", "cut -2", "deal with increment 5", "cut 4");
+        List<Integer> cards = IntStream.range(0, 11).boxed().collect(Collectors.toCollection(ArrayList::new));
+
+        Day22 day = new Day22();
+        for (int repeat = 0; repeat < 2; repeat++) {
+            cards = day.incDeal(cards, 7);
+            cards = day.invertList(cards);
+            cards = day.cutCards(cards, -2);
+            cards = day.incDeal(cards, 5);
+            cards = day.cutCards(cards, 4);
+        }
+        Day22.LinearShuffle shuffle = day.toLinearShuffle(day.getShuffles(lines), 11).repeat(2);
+
+        for (int card = 0; card < 11; card++) {
+            assertEquals(cards.indexOf(card), shuffle.getPosition(card));
+            assertEquals((long) cards.get(card), shuffle.getCardAt(card));
+        }
+    }
 }
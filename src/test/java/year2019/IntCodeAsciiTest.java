@@ -0,0 +1,42 @@
+package year2019;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntCodeAsciiTest {
+    /**
+     * outputs every input value back, halts after echoing 0
+     */
+    private static final long[] ECHO_PROGRAM = {3, 100, 4, 100, 1005, 100, 0, 99};
+
+    @Test
+    public void asciiText_run_echoedIntoOutput() {
+        IntCodeAscii echo = new IntCodeAscii(new IntCodeComputer(ECHO_PROGRAM));
+        echo.send("NOT A J").sendLine("").sendLine("WALK");
+
+        assertEquals(IntCodeComputer.Status.AWAITING_INPUT, echo.run());
+        assertEquals("NOT A J\nWALK\n", echo.getOutput());
+        assertEquals(-1, echo.getLastNonAsciiOutput());
+
+        echo.clearOutput();
+        echo.send("ok");
+        echo.run();
+        assertEquals("ok", echo.getOutput());
+    }
+
+    @Test
+    public void nonAsciiValues_run_keptAsideOfText() {
+        IntCodeAscii echo = new IntCodeAscii(new IntCodeComputer(ECHO_PROGRAM));
+        echo.send("a");
+        echo.getComputer().addInput(128);
+        echo.send("b");
+        echo.getComputer().addInput(19355391);
+        echo.sendLine("c");
+        echo.getComputer().addInput(0);
+
+        assertEquals(IntCodeComputer.Status.HALTED, echo.run());
+        assertEquals("abc\n\0", echo.getOutput());
+        assertEquals(19355391, echo.getLastNonAsciiOutput());
+    }
+}
@@ -0,0 +1,60 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IntCodeBatchTest {
+    /**
+     * outputs 1 if the input equals the number at 20, 0 otherwise, then the input multiplied by itself
+     */
+    private static final long[] PROGRAM = {3, 21, 8, 21, 20, 22, 4, 22, 2, 21, 21, 23, 4, 23, 99, 0, 0, 0, 0, 0, 8};
+    private static final int INSTANCES_COUNT = 50;
+    private static final int FAILING_INSTANCE = 13;
+    private static final int AWAITING_INPUT_INSTANCE = 17;
+
+    @Test
+    public void batch_run_sameAsSingleRuns() {
+        IntCodeBatch.Result result = new IntCodeBatch(PROGRAM).run(INSTANCES_COUNT, this::initialize);
+
+        assertEquals(INSTANCES_COUNT, result.getInstancesCount());
+        for (int instance = 0; instance < INSTANCES_COUNT; instance++) {
+            String message = String.format("instance %d", instance);
+            IntCodeComputer single = new IntCodeComputer(PROGRAM);
+            long[] inputs = initialize(instance, single);
+            single.addInputs(inputs, inputs.length);
+            List<Long> outputs = new ArrayList<>();
+            IntCodeComputer.Status status;
+            try {
+                while ((status = single.run()) == IntCodeComputer.Status.OUTPUT) {
+                    outputs.add(single.getOutput());
+                }
+            } catch (RuntimeException e) {
+                assertTrue(message, result.isFailed(instance));
+                assertEquals(message, e.getMessage(), result.getFailure(instance).getMessage());
+                continue;
+            }
+
+            assertFalse(message, result.isFailed(instance));
+            assertEquals(message, status == IntCodeComputer.Status.HALTED, result.isHalted(instance));
+            assertEquals(message, status == IntCodeComputer.Status.AWAITING_INPUT, result.isAwaitingInput(instance));
+            assertArrayEquals(message, outputs.stream().mapToLong(Long::longValue).toArray(), result.getOutputs(instance));
+            for (int address = 0; address < PROGRAM.length + 3; address++) {
+                assertEquals(message, single.read(address), result.read(instance, address));
+            }
+        }
+        assertTrue(result.isFailed(FAILING_INSTANCE));
+        assertTrue(result.isAwaitingInput(AWAITING_INPUT_INSTANCE));
+    }
+
+    private long[] initialize(int instance, IntCodeComputer computer) {
+        computer.write(20, instance % 10);
+        if (instance == FAILING_INSTANCE) {
+            computer.write(8, 42);
+        }
+        return instance == AWAITING_INPUT_INSTANCE ? new long[0] : new long[]{instance % 7};
+    }
+}
@@ -0,0 +1,59 @@
+package year2019;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntCodeComputerTest {
+    private static final int PAGE_SIZE = IntCodeComputer.Memory.PAGE_SIZE;
+
+    @Test
+    public void forkedComputers_write_memoryIsolatedAndPagesCopiedOnWrite() {
+        long[] program = new long[3 * PAGE_SIZE];
+        program[0] = 99;
+        program[PAGE_SIZE] = 7;
+        program[2 * PAGE_SIZE] = 8;
+        IntCodeComputer original = new IntCodeComputer(program);
+        assertEquals(3, original.getMemory().getPrivatePagesCount());
+
+        IntCodeComputer forked = original.fork();
+        assertEquals(0, original.getMemory().getPrivatePagesCount());
+        assertEquals(0, forked.getMemory().getPrivatePagesCount());
+
+        original.write(PAGE_SIZE, 70);
+        forked.write(2 * PAGE_SIZE, 80);
+        forked.write(10 * PAGE_SIZE, 100);
+
+        assertEquals(70, original.read(PAGE_SIZE));
+        assertEquals(8, original.read(2 * PAGE_SIZE));
+        assertEquals(0, original.read(10 * PAGE_SIZE));
+        assertEquals(7, forked.read(PAGE_SIZE));
+        assertEquals(80, forked.read(2 * PAGE_SIZE));
+        assertEquals(100, forked.read(10 * PAGE_SIZE));
+        assertEquals(1, original.getMemory().getPrivatePagesCount());
+        assertEquals(2, forked.getMemory().getPrivatePagesCount());
+    }
+
+    @Test
+    public void snapshot_forkTwice_bothContinueFromSnapshot() {
+        // outputs the input doubled, forever
+        long[] program = {3, 20, 1002, 20, 2, 20, 4, 20, 1105, 1, 0};
+        IntCodeComputer computer = new IntCodeComputer(program);
+        computer.addInput(5);
+        assertEquals(IntCodeComputer.Status.OUTPUT, computer.run());
+        assertEquals(IntCodeComputer.Status.AWAITING_INPUT, computer.run());
+
+        IntCodeComputer.Snapshot snapshot = computer.snapshot();
+        IntCodeComputer first = snapshot.fork();
+        IntCodeComputer second = snapshot.fork();
+        first.addInput(1);
+        second.addInput(2);
+        assertEquals(IntCodeComputer.Status.OUTPUT, first.run());
+        assertEquals(IntCodeComputer.Status.OUTPUT, second.run());
+
+        assertEquals(2, first.getOutput());
+        assertEquals(4, second.getOutput());
+        assertEquals(10, computer.read(20));
+        assertEquals(snapshot.getInstructionPointer(), computer.getInstructionPointer());
+    }
+}
@@ -0,0 +1,71 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IntCodeTraceTest {
+    /**
+     * reads n, outputs n * 2^k until it reaches 1024, then copies itself with the relative base (day 9 quine part)
+     */
+    private static final long[] PROGRAM = {
+            3, 100, 1, 100, 100, 100, 4, 100, 1008, 100, 1024, 101, 1006, 101, 2,
+            109, 1, 204, -1, 1001, 102, 1, 102, 1008, 102, 16, 103, 1006, 103, 15, 99
+    };
+    private static final int CHECKPOINT_INTERVAL = 7;
+
+    @Test
+    public void recordedRun_seek_sameAsFreshExecution() throws IOException {
+        Path tracePath = Files.createTempFile("intcode", ".trace");
+        try {
+            List<Long> outputs = new ArrayList<>();
+            try (IntCodeTrace.Recorder recorder = IntCodeTrace.record(tracePath, CHECKPOINT_INTERVAL)) {
+                IntCodeComputer computer = createComputer();
+                computer.setTraceRecorder(recorder);
+                while (computer.run() != IntCodeComputer.Status.HALTED) {
+                    outputs.add(computer.getOutput());
+                }
+            }
+
+            try (IntCodeTrace.Replay replay = IntCodeTrace.replay(tracePath)) {
+                assertEquals(CHECKPOINT_INTERVAL, replay.getCheckpointInterval());
+                assertArrayEquals(new long[]{1}, replay.getInputs());
+                assertArrayEquals(outputs.stream().mapToLong(Long::longValue).toArray(), replay.getOutputs());
+
+                long stepsCount = replay.getStepsCount();
+                for (long step : new long[]{0, 1, CHECKPOINT_INTERVAL - 1, CHECKPOINT_INTERVAL, CHECKPOINT_INTERVAL + 3,
+                        stepsCount / 2, stepsCount - 1, stepsCount}) {
+                    IntCodeTrace.State state = replay.seek(step);
+                    IntCodeComputer fresh = createComputer();
+                    for (long executed = 0; executed < step; executed++) {
+                        fresh.step();
+                    }
+
+                    String message = String.format("step %d", step);
+                    assertEquals(message, step, state.getStep());
+                    assertEquals(message, fresh.getInstructionPointer(), state.getInstructionPointer());
+                    assertEquals(message, fresh.getRelativeBase(), state.getRelativeBase());
+                    long[] memory = state.getMemory();
+                    long[] freshMemory = fresh.getMemory().toArray(Math.max(memory.length, fresh.getMemory().size()));
+                    assertArrayEquals(message, freshMemory, Arrays.copyOf(memory, freshMemory.length));
+                }
+            }
+        } finally {
+            Files.delete(tracePath);
+        }
+    }
+
+    private IntCodeComputer createComputer() {
+        IntCodeComputer computer = new IntCodeComputer(PROGRAM);
+        computer.addInput(1);
+        return computer;
+    }
+}
@@ -0,0 +1,104 @@
+package year2019;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpringScriptSynthesizerTest {
+    private static final String[] WALK_HULLS = {
+            "#####.###########", "#####.##.########", "#####...#########", "#####.#..########"
+    };
+    private static final String[] RUN_HULLS = {
+            "#####.###########", "#####.##.########", "#####..#.########", "#####.#.#.#..####", "#####..#.###.####",
+            "#####.#.##.#.####", "#####.#.##.##.###", "#####..###..#.###", "#####.#..########"
+    };
+    private static final int MAX_SCRIPT_LENGTH = 15;
+    private static final int JUMP_DISTANCE = 4;
+
+    @Test
+    public void walkHulls_synthesize_shortestScriptCrossingAll() {
+        assertShortestScriptCrossesAll(4, WALK_HULLS);
+    }
+
+    @Test
+    public void runHulls_synthesize_shortestScriptCrossingAll() {
+        assertShortestScriptCrossesAll(9, RUN_HULLS);
+    }
+
+    /**
+     * the tile 8 of the second hull would need a jump, but a single jump over the holes never stands on it
+     */
+    @Test
+    public void holesJumpedOver_synthesize_noConstraintsOnSkippedTiles() {
+        int length = assertShortestScriptCrossesAll(4, new String[]{"#####.##...", "#########..", "##########."});
+
+        assertEquals(1, length);
+    }
+
+    @Test
+    public void knownHull_add_rejected() {
+        SpringScriptSynthesizer synthesizer = new SpringScriptSynthesizer(4);
+        assertTrue(synthesizer.addHull(WALK_HULLS[0]));
+        assertFalse(synthesizer.addHull(WALK_HULLS[0]));
+    }
+
+    /**
+     * @return length of the synthesized script
+     */
+    private int assertShortestScriptCrossesAll(int sensorsCount, String[] hulls) {
+        SpringScriptSynthesizer synthesizer = new SpringScriptSynthesizer(sensorsCount);
+        for (String hull : hulls) {
+            assertTrue(synthesizer.addHull(hull));
+        }
+
+        String[] script = new String(synthesizer.synthesize(MAX_SCRIPT_LENGTH).get().walk().build()).split("\n");
+        int length = script.length - 1;
+        for (String hull : hulls) {
+            assertTrue(String.format("%s, script %s", hull, String.join(";", script)), isCrossing(script, hull));
+        }
+        assertFalse(synthesizer.synthesize(length - 1).isPresent());
+        return length;
+    }
+
+    /**
+     * Runs the script the way the droid does: registers A-I show the ground 1-9 tiles away, T and J start false
+     */
+    private boolean isCrossing(String[] script, String hull) {
+        int position = 0;
+        while (position < hull.length()) {
+            Map<Character, Boolean> registers = new HashMap<>();
+            for (int sensor = 0; sensor < 9; sensor++) {
+                int tile = position + 1 + sensor;
+                registers.put((char) ('A' + sensor), tile >= hull.length() || hull.charAt(tile) == '#');
+            }
+            registers.put('T', false);
+            registers.put('J', false);
+            for (int i = 0; i < script.length - 1; i++) {
+                String[] instruction = script[i].split(" ");
+                boolean x = registers.get(instruction[1].charAt(0));
+                char destination = instruction[2].charAt(0);
+                boolean y = registers.get(destination);
+                switch (instruction[0]) {
+                    case "AND":
+                        registers.put(destination, x && y);
+                        break;
+                    case "OR":
+                        registers.put(destination, x || y);
+                        break;
+                    default:
+                        registers.put(destination, !x);
+                }
+            }
+            position += registers.get('J') ? JUMP_DISTANCE : 1;
+            if (position < hull.length() && hull.charAt(position) != '#') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
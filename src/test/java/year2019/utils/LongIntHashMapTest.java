@@ -0,0 +1,86 @@
+package year2019.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void extremeAndNegativeKeys_put_keptApart() {
+        long[] keys = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, LongIntHashMap.pack(-1, 0)};
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(-1, map.put(keys[i], i, -1));
+        }
+
+        assertEquals(keys.length, map.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i], -1));
+        }
+        assertEquals(-1, map.get(2, -1));
+        assertFalse(map.containsKey(-2));
+    }
+
+    @Test
+    public void negativeCoordinates_packUnpack_sameCoordinates() {
+        int[] coordinates = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, -12345};
+        for (int x : coordinates) {
+            for (int y : coordinates) {
+                long key = LongIntHashMap.pack(x, y);
+                assertEquals(x, LongIntHashMap.unpackX(key));
+                assertEquals(y, LongIntHashMap.unpackY(key));
+            }
+        }
+    }
+
+    /**
+     * the small start and a narrow key range make the probe sequences collide and the table resize many times
+     */
+    @Test
+    public void randomOperations_sameAsHashMap() {
+        Random random = new Random(32);
+        LongIntHashMap map = new LongIntHashMap(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextBoolean()
+                    ? LongIntHashMap.pack(random.nextInt(200) - 100, random.nextInt(200) - 100)
+                    : random.nextInt(20_000) - 10_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key, -1));
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+            } else {
+                int value = random.nextInt();
+                Integer previous = expected.put(key, value);
+                assertEquals(previous == null ? -1 : previous, map.put(key, value, -1));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Long, Integer> entries = new HashMap<>();
+        map.forEach(entries::put);
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void filledMap_clear_empty() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (long key = -100; key < 100; key++) {
+            map.put(key, 1);
+        }
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(0));
+        map.put(0, 2);
+        assertEquals(2, map.get(0, -1));
+        assertEquals(1, map.size());
+    }
+}
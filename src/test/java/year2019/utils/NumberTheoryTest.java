@@ -0,0 +1,21 @@
+package year2019.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class NumberTheoryTest {
+
+    @Test
+    public void smallValues_lcm_leastCommonMultiple() {
+        assertEquals(12, NumberTheory.lcm(4, 6));
+        assertEquals(12, NumberTheory.lcm(-4, 6));
+        assertEquals(0, NumberTheory.lcm(0, 6));
+        assertEquals(60, NumberTheory.lcm(3, 4, 5, 6));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void minLong_lcm_throws() {
+        NumberTheory.lcm(Long.MIN_VALUE, 1);
+    }
+}
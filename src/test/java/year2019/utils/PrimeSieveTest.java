@@ -0,0 +1,56 @@
+package year2019.utils;
+
+import org.junit.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PrimeSieveTest {
+    /**
+     * greatest number of the first segment, the segment ends on a word boundary
+     */
+    private static final long SEGMENT_LIMIT = 2L * PrimeSieve.SEGMENT_ODDS - 1;
+    /**
+     * greatest number covered by the first word of the bitset
+     */
+    private static final long WORD_LIMIT = 2L * Long.SIZE - 1;
+
+    @Test
+    public void limitsAroundBoundaries_sieve_sameAsNaiveSieve() {
+        long[] limits = {
+                0, 1, 2, 3, 4, WORD_LIMIT - 1, WORD_LIMIT, WORD_LIMIT + 1, WORD_LIMIT + 2, 10 * WORD_LIMIT + 1,
+                SEGMENT_LIMIT - 2, SEGMENT_LIMIT, SEGMENT_LIMIT + 1, SEGMENT_LIMIT + 2, 3 * (SEGMENT_LIMIT + 1) + 1
+        };
+        boolean[] isComposite = getNaiveComposites((int) limits[limits.length - 1]);
+        for (long limit : limits) {
+            long[] expectedPrimes = LongStream.rangeClosed(2, limit).filter(number -> !isComposite[(int) number]).toArray();
+            for (boolean isParallel : new boolean[]{false, true}) {
+                String message = String.format("limit %d, parallel %b", limit, isParallel);
+                PrimeSieve sieve = new PrimeSieve(limit, isParallel);
+
+                assertArrayEquals(message, expectedPrimes, sieve.primes().toArray());
+                assertEquals(message, expectedPrimes.length, sieve.getPrimesCount());
+                for (long number = 0; number <= limit; number++) {
+                    assertEquals(message, number >= 2 && !isComposite[(int) number], sieve.isPrime(number));
+                }
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void numberAboveLimit_isPrime_throws() {
+        new PrimeSieve(100).isPrime(101);
+    }
+
+    private static boolean[] getNaiveComposites(int maxValue) {
+        boolean[] isComposite = new boolean[maxValue + 1];
+        for (int number = 2; (long) number * number <= maxValue; number++) {
+            for (int multiple = number * number; multiple <= maxValue; multiple += number) {
+                isComposite[multiple] = true;
+            }
+        }
+        return isComposite;
+    }
+}